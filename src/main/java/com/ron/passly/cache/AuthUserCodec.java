@@ -0,0 +1,40 @@
+package com.ron.passly.cache;
+
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.Roles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * v1: id, email, password hash, role bitmask, first name, last name.
+ */
+public class AuthUserCodec implements TypeCodec<AuthUser> {
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(AuthUser user, DataOutput out) throws IOException {
+        BinaryCodec.writeUuid(out, user.id());
+        BinaryCodec.writeString(out, user.email());
+        BinaryCodec.writeString(out, user.password());
+        out.writeInt(Roles.toMask(user.roles()));
+        BinaryCodec.writeString(out, user.firstName());
+        BinaryCodec.writeString(out, user.lastName());
+    }
+
+    @Override
+    public AuthUser read(int version, DataInput in) throws IOException {
+        return new AuthUser(
+                BinaryCodec.readUuid(in),
+                BinaryCodec.readString(in),
+                BinaryCodec.readString(in),
+                in.readInt(),
+                BinaryCodec.readString(in),
+                BinaryCodec.readString(in));
+    }
+}
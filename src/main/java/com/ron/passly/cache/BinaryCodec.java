@@ -0,0 +1,221 @@
+package com.ron.passly.cache;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact, versioned Redis value format for cached DTOs.
+ *
+ * Layout: magic, flags, type tag, schema version, then the payload written by the type's TypeCodec.
+ * Payloads at or above the compression threshold are LZ4 compressed (flag bit 0) and prefixed
+ * with their raw length. Only registered types can be written, so entities or other
+ * unexpected objects fail fast instead of being cached.
+ */
+public class BinaryCodec implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xB1;
+    private static final int HEADER_LENGTH = 4;
+    private static final int FLAG_LZ4 = 1;
+    // Guards decompression against corrupt or hostile length prefixes
+    private static final int MAX_RAW_LENGTH = 16 * 1024 * 1024;
+
+    private final Map<Class<?>, Registration<?>> byType = new ConcurrentHashMap<>();
+    private final Registration<?>[] byTag = new Registration<?>[256];
+    private final int compressionThreshold;
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    private record Registration<T>(int tag, Class<T> type, TypeCodec<T> codec) {
+    }
+
+    public BinaryCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    public <T> BinaryCodec register(int tag, Class<T> type, TypeCodec<T> codec) {
+        if (tag < 0 || tag > 255 || byTag[tag] != null) {
+            throw new IllegalArgumentException("Invalid or duplicate type tag " + tag + " for " + type.getName());
+        }
+        Registration<T> registration = new Registration<>(tag, type, codec);
+        byTag[tag] = registration;
+        byType.put(type, registration);
+        return this;
+    }
+
+    public boolean supports(Class<?> type) {
+        return byType.containsKey(type);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Registration<Object> registration = (Registration<Object>) byType.get(value.getClass());
+        if (registration == null) {
+            throw new SerializationException("No binary codec registered for " + value.getClass().getName());
+        }
+
+        byte[] payload;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+            registration.codec().write(value, new DataOutputStream(buffer));
+            payload = buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Failed to encode " + registration.type().getName(), e);
+        }
+
+        boolean compress = payload.length >= compressionThreshold;
+        byte[] body = compress ? compress(payload) : payload;
+        // Not worth it for incompressible data (e.g. ciphertext)
+        if (compress && body.length >= payload.length) {
+            compress = false;
+            body = payload;
+        }
+
+        byte[] out = new byte[HEADER_LENGTH + body.length];
+        out[0] = MAGIC;
+        out[1] = (byte) (compress ? FLAG_LZ4 : 0);
+        out[2] = (byte) registration.tag();
+        out[3] = (byte) registration.codec().version();
+        System.arraycopy(body, 0, out, HEADER_LENGTH, body.length);
+        return out;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) {
+            throw new SerializationException("Not a binary codec value");
+        }
+
+        Registration<?> registration = byTag[bytes[2] & 0xFF];
+        if (registration == null) {
+            throw new SerializationException("Unknown type tag " + (bytes[2] & 0xFF));
+        }
+
+        int version = bytes[3] & 0xFF;
+        if (version > registration.codec().version()) {
+            // Written by a newer deployment: treat as a miss rather than misread it
+            throw new SerializationException("Unsupported " + registration.type().getSimpleName() + " version " + version);
+        }
+
+        byte[] payload = (bytes[1] & FLAG_LZ4) != 0
+                ? decompress(bytes)
+                : Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length);
+
+        try {
+            return registration.codec().read(version, new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException e) {
+            throw new SerializationException("Failed to decode " + registration.type().getName(), e);
+        }
+    }
+
+    private byte[] compress(byte[] payload) {
+        byte[] out = new byte[4 + compressor.maxCompressedLength(payload.length)];
+        writeInt(out, payload.length);
+        int length = compressor.compress(payload, 0, payload.length, out, 4, out.length - 4);
+        return Arrays.copyOf(out, 4 + length);
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        int rawLength = readInt(bytes, HEADER_LENGTH);
+        if (rawLength < 0 || rawLength > MAX_RAW_LENGTH) {
+            throw new SerializationException("Invalid compressed length " + rawLength);
+        }
+        byte[] payload = new byte[rawLength];
+        int offset = HEADER_LENGTH + 4;
+        int length = decompressor.decompress(bytes, offset, bytes.length - offset, payload, 0);
+        if (length != rawLength) {
+            throw new SerializationException("Corrupt compressed value");
+        }
+        return payload;
+    }
+
+    private static void writeInt(byte[] out, int value) {
+        out[0] = (byte) (value >>> 24);
+        out[1] = (byte) (value >>> 16);
+        out[2] = (byte) (value >>> 8);
+        out[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] in, int offset) {
+        return ((in[offset] & 0xFF) << 24) | ((in[offset + 1] & 0xFF) << 16)
+                | ((in[offset + 2] & 0xFF) << 8) | (in[offset + 3] & 0xFF);
+    }
+
+    // Field helpers shared by the TypeCodec implementations
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    static void writeBytes(DataOutput out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_RAW_LENGTH) {
+            throw new IOException("Field too large: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeUuid(DataOutput out, UUID value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+}
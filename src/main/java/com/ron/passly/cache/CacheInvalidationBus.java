@@ -0,0 +1,112 @@
+package com.ron.passly.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis pub/sub channel that keeps the L1 tier of every node in sync.
+ * Messages are "node|cache|key" (key "*" clears the whole cache); a node ignores its own messages.
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "passly:cache-invalidation";
+    private static final String CLEAR_ALL = "*";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService subscriber = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private RedisMessageListenerContainer container;
+
+    public CacheInvalidationBus(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Subscribes in the background and keeps retrying while Redis is down, so an outage
+     * never blocks startup; until then L1 entries simply age out.
+     * The container is owned here rather than registered as a bean, because the context
+     * would otherwise start it during refresh and fail when Redis is unreachable.
+     */
+    public void subscribe(RedisConnectionFactory connectionFactory) {
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, new ChannelTopic(CHANNEL));
+        container.afterPropertiesSet();
+
+        subscriber.scheduleWithFixedDelay(() -> {
+            try {
+                container.start();
+                log.info("Subscribed to cache invalidation channel {}", CHANNEL);
+                subscriber.shutdown();
+            } catch (Exception e) {
+                log.warn("Cache invalidation channel unavailable, retrying: {}", e.getMessage());
+            }
+        }, 0, 30, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() throws Exception {
+        subscriber.shutdownNow();
+        if (container != null) {
+            container.destroy();
+        }
+    }
+
+    void register(TwoLevelCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(cacheName + "|" + key);
+    }
+
+    public void publishClear(String cacheName) {
+        publish(cacheName + "|" + CLEAR_ALL);
+    }
+
+    private void publish(String payload) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + "|" + payload);
+        } catch (Exception e) {
+            // Other nodes fall back to their L1 expiry
+            log.warn("Failed to publish cache invalidation {}: {}", payload, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+
+        if (CLEAR_ALL.equals(parts[2])) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+}
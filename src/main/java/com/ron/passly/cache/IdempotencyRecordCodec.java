@@ -0,0 +1,41 @@
+package com.ron.passly.cache;
+
+import com.ron.passly.service.IdempotencyService.IdempotencyRecord;
+import com.ron.passly.service.IdempotencyService.State;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * v1: state ordinal, request fingerprint, HTTP status, content type, response body.
+ * The body is the bulk of the record and the part LZ4 compression pays off on.
+ */
+public class IdempotencyRecordCodec implements TypeCodec<IdempotencyRecord> {
+
+    private static final State[] STATES = State.values();
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(IdempotencyRecord record, DataOutput out) throws IOException {
+        out.writeByte(record.state().ordinal());
+        BinaryCodec.writeString(out, record.fingerprint());
+        out.writeShort(record.status());
+        BinaryCodec.writeString(out, record.contentType());
+        BinaryCodec.writeBytes(out, record.body());
+    }
+
+    @Override
+    public IdempotencyRecord read(int version, DataInput in) throws IOException {
+        return new IdempotencyRecord(
+                STATES[in.readUnsignedByte()],
+                BinaryCodec.readString(in),
+                in.readUnsignedShort(),
+                BinaryCodec.readString(in),
+                BinaryCodec.readBytes(in));
+    }
+}
@@ -0,0 +1,26 @@
+package com.ron.passly.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * v1: the value as 8 bytes.
+ */
+public class LongCodec implements TypeCodec<Long> {
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Long value, DataOutput out) throws IOException {
+        out.writeLong(value);
+    }
+
+    @Override
+    public Long read(int version, DataInput in) throws IOException {
+        return in.readLong();
+    }
+}
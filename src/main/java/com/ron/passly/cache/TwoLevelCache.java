@@ -0,0 +1,184 @@
+package com.ron.passly.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Spring Cache with a bounded in-process Caffeine L1 in front of a shared Redis L2.
+ *
+ * Reads go L1 -> L2 -> loader. Loads go through Caffeine's per-key compute, so a cold key
+ * under concurrent load runs the loader once per node while the other callers wait.
+ * Evictions clear both tiers and are broadcast so other nodes drop their L1 copy.
+ * Redis failures degrade to L1 + loader instead of failing the request.
+ * Null values are never stored.
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final Cache<String, Object> local;
+    private final org.springframework.cache.Cache remote;
+    private final CacheInvalidationBus invalidationBus;
+
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter loads;
+
+    public TwoLevelCache(String name,
+                         Cache<String, Object> local,
+                         org.springframework.cache.Cache remote,
+                         CacheInvalidationBus invalidationBus,
+                         MeterRegistry meterRegistry) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name, "tier", "l1");
+        this.remoteHits = Counter.builder("cache.gets").tags("cache", name, "tier", "l2", "result", "hit")
+                .description("L2 (Redis) lookups that found a value").register(meterRegistry);
+        this.remoteMisses = Counter.builder("cache.gets").tags("cache", name, "tier", "l2", "result", "miss")
+                .description("L2 (Redis) lookups that found nothing").register(meterRegistry);
+        this.loads = Counter.builder("cache.loads").tags("cache", name)
+                .description("Values loaded from the source of truth").register(meterRegistry);
+
+        meterRegistry.gauge("cache.hit.ratio", Tags.of("cache", name, "tier", "l1"),
+                local, cache -> cache.stats().hitRate());
+        meterRegistry.gauge("cache.hit.ratio", Tags.of("cache", name, "tier", "l2"),
+                this, cache -> cache.remoteHitRatio());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = cacheKey(key);
+        Object value = local.getIfPresent(cacheKey);
+        if (value != null) {
+            return value;
+        }
+
+        value = remoteGet(cacheKey);
+        if (value != null) {
+            local.put(cacheKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Caffeine compute is atomic per key: concurrent callers for a cold key share one load
+        return (T) local.get(cacheKey(key), k -> {
+            Object cached = remoteGet(k);
+            if (cached != null) {
+                return cached;
+            }
+
+            Object loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(k, valueLoader, e);
+            }
+            loads.increment();
+
+            if (loaded != null) {
+                remotePut(k, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        String cacheKey = cacheKey(key);
+        local.put(cacheKey, value);
+        remotePut(cacheKey, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = cacheKey(key);
+        local.invalidate(cacheKey);
+        try {
+            remote.evict(cacheKey);
+        } catch (Exception e) {
+            log.warn("Failed to evict {} from Redis cache {}: {}", cacheKey, name, e.getMessage());
+        }
+        invalidationBus.publishEvict(name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        try {
+            remote.clear();
+        } catch (Exception e) {
+            log.warn("Failed to clear Redis cache {}: {}", name, e.getMessage());
+        }
+        invalidationBus.publishClear(name);
+    }
+
+    // Invalidation received from another node: only our L1 copy is stale
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    // Keys travel between nodes as strings, so both tiers use the string form
+    private static String cacheKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Object remoteGet(String key) {
+        try {
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                remoteHits.increment();
+                return wrapper.get();
+            }
+        } catch (Exception e) {
+            log.debug("Redis cache {} unavailable on read: {}", name, e.getMessage());
+        }
+        remoteMisses.increment();
+        return null;
+    }
+
+    private void remotePut(String key, Object value) {
+        try {
+            remote.put(key, value);
+        } catch (Exception e) {
+            log.debug("Redis cache {} unavailable on write: {}", name, e.getMessage());
+        }
+    }
+
+    private double remoteHitRatio() {
+        double hits = remoteHits.count();
+        double total = hits + remoteMisses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+}
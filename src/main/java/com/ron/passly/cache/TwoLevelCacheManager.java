@@ -0,0 +1,66 @@
+package com.ron.passly.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds a TwoLevelCache per cache name on top of a RedisCacheManager.
+ * Transaction aware: puts and evictions made inside a transaction are applied after commit,
+ * so a concurrent reader cannot re-cache the old row between eviction and commit.
+ */
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager {
+
+    private final RedisCacheManager redisCacheManager;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final Collection<String> initialCacheNames;
+    private final long localMaximumSize;
+    private final Duration localTtl;
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager,
+                                CacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry,
+                                Collection<String> initialCacheNames,
+                                long localMaximumSize,
+                                Duration localTtl) {
+        this.redisCacheManager = redisCacheManager;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.initialCacheNames = List.copyOf(initialCacheNames);
+        this.localMaximumSize = localMaximumSize;
+        this.localTtl = localTtl;
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return initialCacheNames.stream().map(this::createCache).toList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private TwoLevelCache createCache(String name) {
+        TwoLevelCache cache = new TwoLevelCache(
+                name,
+                Caffeine.newBuilder()
+                        .maximumSize(localMaximumSize)
+                        .expireAfterWrite(localTtl)
+                        .recordStats()
+                        .build(),
+                redisCacheManager.getCache(name),
+                invalidationBus,
+                meterRegistry);
+        invalidationBus.register(cache);
+        return cache;
+    }
+}
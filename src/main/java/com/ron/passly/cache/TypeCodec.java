@@ -0,0 +1,19 @@
+package com.ron.passly.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary schema for one cached type.
+ * Bump version() when the layout changes and keep reading the old versions in read(),
+ * so entries written by the previous deployment stay readable during a rollout.
+ */
+public interface TypeCodec<T> {
+
+    int version();
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(int version, DataInput in) throws IOException;
+}
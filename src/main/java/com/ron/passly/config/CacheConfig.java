@@ -0,0 +1,73 @@
+package com.ron.passly.config;
+
+import com.ron.passly.cache.BinaryCodec;
+import com.ron.passly.cache.CacheInvalidationBus;
+import com.ron.passly.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String AUTH_CACHE = "auth-cache";
+    public static final String VAULT_VERSION_CACHE = "vault-version";
+
+    // Values are written with BinaryCodec, so only its registered DTO types can be cached
+    private static final Set<String> CACHE_NAMES = Set.of(AUTH_CACHE, VAULT_VERSION_CACHE);
+
+    @Value("${spring.cache.redis.time-to-live:600000ms}")
+    private Duration redisTtl;
+
+    // Evicted after every vault write; the TTL only bounds a reload racing with a commit on another node
+    @Value("${cache.vault-version.time-to-live:60s}")
+    private Duration vaultVersionTtl;
+
+    @Value("${cache.l1.maximum-size:10000}")
+    private long localMaximumSize;
+
+    @Value("${cache.l1.time-to-live:60s}")
+    private Duration localTtl;
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(RedisTemplate<String, String> redisTemplate,
+                                                     RedisConnectionFactory connectionFactory) {
+        CacheInvalidationBus bus = new CacheInvalidationBus(redisTemplate);
+        bus.subscribe(connectionFactory);
+        return bus;
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     MeterRegistry meterRegistry,
+                                     BinaryCodec binaryCodec) {
+
+        RedisCacheConfiguration defaults = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(redisTtl)
+                .disableCachingNullValues()
+                .serializeValuesWith(SerializationPair.fromSerializer(binaryCodec));
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(defaults)
+                .initialCacheNames(CACHE_NAMES)
+                .withCacheConfiguration(VAULT_VERSION_CACHE, defaults.entryTtl(vaultVersionTtl))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, cacheInvalidationBus, meterRegistry,
+                CACHE_NAMES, localMaximumSize, localTtl);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ron.passly.config;
+
+import com.ron.passly.store.EmbeddedTransactionManager;
+import com.ron.passly.store.LogStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Single-node storage without PostgreSQL (profile "embedded", see application-embedded.properties):
+ * the repositories in repository.embedded run on a LogStore in embedded.store.directory and
+ * transactions are LogStore transactions. Not combined with replicas or sharding.
+ */
+@Configuration
+@Profile("embedded")
+public class EmbeddedStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public LogStore logStore(@Value("${embedded.store.directory:./data}") Path directory,
+                             @Value("${embedded.store.segment-size:64MB}") DataSize segmentSize,
+                             @Value("${embedded.store.fsync-interval:2ms}") Duration fsyncInterval,
+                             @Value("${embedded.store.compaction-threshold:0.5}") double compactionThreshold,
+                             @Value("${embedded.store.compaction-interval:5m}") Duration compactionInterval) {
+        return new LogStore(directory, Math.toIntExact(segmentSize.toBytes()), fsyncInterval,
+                compactionThreshold, compactionInterval);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(LogStore logStore) {
+        return new EmbeddedTransactionManager(logStore);
+    }
+}
@@ -0,0 +1,22 @@
+package com.ron.passly.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tuning for the ObjectMapper Boot auto-configures (module beans are registered on it).
+ *
+ * Responses are records from the dto package, never entities. FAIL_ON_EMPTY_BEANS is left on,
+ * so an entity or proxy that reaches a response fails loudly instead of serializing as {}.
+ */
+@Configuration
+public class JacksonConfig {
+
+    // Property access through LambdaMetafactory-generated accessors instead of reflection
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
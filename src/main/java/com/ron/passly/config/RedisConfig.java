@@ -1,5 +1,12 @@
 package com.ron.passly.config;
 
+import com.ron.passly.cache.AuthUserCodec;
+import com.ron.passly.cache.BinaryCodec;
+import com.ron.passly.cache.IdempotencyRecordCodec;
+import com.ron.passly.cache.LongCodec;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.service.IdempotencyService.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -31,4 +38,31 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    // Type tags are part of the stored format: never reuse or renumber them
+    @Bean
+    public BinaryCodec binaryCodec(@Value("${cache.codec.compression-threshold:1024}") int compressionThreshold) {
+        return new BinaryCodec(compressionThreshold)
+                .register(1, AuthUser.class, new AuthUserCodec())
+                .register(2, IdempotencyRecord.class, new IdempotencyRecordCodec())
+                .register(3, Long.class, new LongCodec());
+    }
+
+    // Binary values (cached DTOs, idempotency records); redisTemplate stays plain strings for counters
+    @Bean
+    public RedisTemplate<String, Object> binaryRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                             BinaryCodec binaryCodec) {
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+
+        StringRedisSerializer stringSerializer = new StringRedisSerializer();
+        template.setKeySerializer(stringSerializer);
+        template.setValueSerializer(binaryCodec);
+        template.setHashKeySerializer(stringSerializer);
+        template.setHashValueSerializer(binaryCodec);
+
+        template.afterPropertiesSet();
+        return template;
+    }
+}
@@ -0,0 +1,97 @@
+package com.ron.passly.config;
+
+import com.ron.passly.datasource.ReadWriteRoutingDataSource;
+import com.ron.passly.datasource.ReadYourWritesTracker;
+import com.ron.passly.datasource.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read/write splitting, only active when datasource.replicas.urls is set; otherwise the
+ * auto-configured single pool is used. Replicas share the spring.datasource.hikari settings
+ * and, unless overridden, the primary's credentials. Ignored when sharding is enabled.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replicas.urls:}'.isBlank() && '${datasource.shards.urls:}'.isBlank()")
+public class ReplicaRoutingConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean(autowireCandidate = false)
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, Environment environment,
+                                              MeterRegistry meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return primary;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+                                 @Value("${datasource.replicas.urls}") List<String> urls,
+                                 @Value("${datasource.replicas.username:}") String username,
+                                 @Value("${datasource.replicas.password:}") String password,
+                                 @Value("${datasource.replicas.max-lag:5s}") Duration maxLag,
+                                 @Value("${datasource.replicas.check-interval:5s}") Duration checkInterval) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+            replica.setJdbcUrl(url.trim());
+            if (!username.isBlank()) {
+                replica.setUsername(username);
+                replica.setPassword(password);
+            }
+            replica.setPoolName("replica-" + (pools.size() + 1));
+            replica.setReadOnly(true);
+            // Pools start lazily, so a replica that is down never blocks startup
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(replica);
+        }
+
+        ReplicaSet replicaSet = new ReplicaSet(pools, maxLag);
+        replicaSet.start(checkInterval);
+        return replicaSet;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 MeterRegistry meterRegistry, ReplicaSet replicaSet,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+                primaryDataSource(properties, environment, meterRegistry), replicaSet, readYourWritesTracker);
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // Informational: reads fall back to the primary, so a replica outage does not fail readiness
+    @Bean("replicas")
+    public HealthIndicator replicasHealthIndicator(ReplicaSet replicaSet) {
+        return () -> Health.up()
+                .withDetail("readsFrom", replicaSet.anyHealthy() ? "replicas" : "primary")
+                .withDetails(replicaSet.describe())
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.ron.passly.config;
 
 import com.ron.passly.security.JwtFilterChain;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,6 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
@@ -18,13 +20,25 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
+// Authorities are the bare role names (RoleAuthorities), so @PreAuthorize checks use hasAuthority, not hasRole
 @Configuration
+@EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    // Constant bodies, written as bytes: no serialization, and no exception text echoed to the client
+    private static final byte[] UNAUTHORIZED_BODY = """
+            {"error":"Authentication required","message":"Full authentication is required to access this resource"}"""
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FORBIDDEN_BODY = """
+            {"error":"Access denied","message":"You do not have permission to access this resource"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
     private final JwtFilterChain jwtFilter;
 
     @Value("${security.password.argon2.saltLength}")
@@ -88,9 +102,11 @@ public class SecurityConfig {
 
                 .authorizeHttpRequests(auth -> auth
 
+                        // Completion of a streamed response (export); the initial dispatch was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/api/health").permitAll()
-                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/health", "/api/health").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
                         .requestMatchers("/error").permitAll()
 
                         .anyRequest().authenticated()
@@ -99,26 +115,19 @@ public class SecurityConfig {
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
 
                 .exceptionHandling(ex -> ex
-                        .authenticationEntryPoint((request, response, authException) -> {
-                            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                            response.setContentType("application/json;charset=UTF-8");
-                            response.getWriter().write(
-                                    "{\"error\":\"Authentication required\"," +
-                                            "\"message\":\"" + authException.getMessage() + "\"," +
-                                            "\"timestamp\":\"" + java.time.Instant.now() + "\"}"
-                            );
-                        })
-                        .accessDeniedHandler((request, response, accessDeniedException) -> {
-                            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                            response.setContentType("application/json;charset=UTF-8");
-                            response.getWriter().write(
-                                    "{\"error\":\"Access denied\"," +
-                                            "\"message\":\"" + accessDeniedException.getMessage() + "\"," +
-                                            "\"timestamp\":\"" + java.time.Instant.now() + "\"}"
-                            );
-                        })
+                        .authenticationEntryPoint((request, response, authException) ->
+                                writeJson(response, HttpServletResponse.SC_UNAUTHORIZED, UNAUTHORIZED_BODY))
+                        .accessDeniedHandler((request, response, accessDeniedException) ->
+                                writeJson(response, HttpServletResponse.SC_FORBIDDEN, FORBIDDEN_BODY))
                 );
 
         return http.build();
     }
-}
\ No newline at end of file
+
+    private static void writeJson(HttpServletResponse response, int status, byte[] body) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
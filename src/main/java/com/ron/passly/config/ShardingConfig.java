@@ -0,0 +1,85 @@
+package com.ron.passly.config;
+
+import com.ron.passly.datasource.ShardDirectory;
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * User-id sharding, only active when datasource.shards.urls is set. The URLs list every shard in
+ * order and the first is shard 0, which also holds the shard directory; shards share the
+ * spring.datasource credentials and hikari settings. Every shard gets the full Flyway schema.
+ * Not combined with read replicas.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${datasource.shards.urls:}'.isBlank()")
+public class ShardingConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                         MeterRegistry meterRegistry, ShardRouter router,
+                                                         @Value("${datasource.shards.urls}") List<String> urls) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource shard = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(shard));
+            shard.setJdbcUrl(url.trim());
+            shard.setPoolName("shard-" + pools.size());
+            shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(shard);
+        }
+        return new ShardRoutingDataSource(pools, router);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardRoutingDataSource shardRoutingDataSource,
+                                         @Value("${datasource.shards.directory-ttl:10s}") Duration ttl,
+                                         @Value("${cache.l1.maximum-size:10000}") long maximumSize) {
+        return new ShardDirectory(new JdbcTemplate(shardRoutingDataSource.shard(0)), ttl, maximumSize);
+    }
+
+    // Boot migrates shard 0 (the unbound default); the others get the same configuration
+    @Bean
+    public FlywayMigrationStrategy shardedMigrationStrategy(ShardRoutingDataSource shardRoutingDataSource,
+                                                            ShardDirectory shardDirectory) {
+        return flyway -> {
+            flyway.migrate();
+            List<HikariDataSource> shards = shardRoutingDataSource.shards();
+            for (int i = 1; i < shards.size(); i++) {
+                log.info("Migrating shard {}", i);
+                Flyway.configure().configuration(flyway.getConfiguration()).dataSource(shards.get(i)).load().migrate();
+            }
+            shardDirectory.seedFromShardZero();
+        };
+    }
+}
@@ -2,18 +2,64 @@ package com.ron.passly.config;
 
 import com.ron.passly.security.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.Duration;
+
 @Configuration
-public class WebConfig implements WebMvcConfigurer {
+public class WebConfig implements WebMvcConfigurer, DisposableBean {
 
     @Autowired
     private RateLimitInterceptor rateLimitInterceptor;
 
+    @Value("${web.streaming.max-concurrent:2}")
+    private int maxConcurrentStreams;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    @Value("${web.streaming.timeout:30m}")
+    private Duration streamingTimeout;
+
+    private ThreadPoolTaskExecutor streamingTaskExecutor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(rateLimitInterceptor);
     }
-}
\ No newline at end of file
+
+    // StreamingResponseBody (vault export) runs here; the timeout must cover a slow client reading a large vault.
+    // Each running stream holds a thread and a connection from the main pool for as long as the client reads,
+    // so at most a quarter of the pool may stream, and the executor does not queue: extra requests are
+    // rejected with 503 instead of waiting behind slow clients.
+    // Not a bean, so Boot's applicationTaskExecutor stays in place for everything else.
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (maxConcurrentStreams < 1 || maxConcurrentStreams > connectionPoolSize / 4) {
+            throw new IllegalStateException("web.streaming.max-concurrent=" + maxConcurrentStreams
+                    + " must be between 1 and a quarter of the connection pool (" + connectionPoolSize + ")");
+        }
+        streamingTaskExecutor = new ThreadPoolTaskExecutor();
+        streamingTaskExecutor.setThreadNamePrefix("streaming-");
+        streamingTaskExecutor.setCorePoolSize(maxConcurrentStreams);
+        streamingTaskExecutor.setMaxPoolSize(maxConcurrentStreams);
+        streamingTaskExecutor.setQueueCapacity(0);
+        streamingTaskExecutor.initialize();
+
+        configurer.setTaskExecutor(streamingTaskExecutor);
+        configurer.setDefaultTimeout(streamingTimeout.toMillis());
+    }
+
+    @Override
+    public void destroy() {
+        if (streamingTaskExecutor != null) {
+            streamingTaskExecutor.shutdown();
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package com.ron.passly.controller;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@RequiredArgsConstructor
 public class HealthController {
 
+    private final ApplicationAvailability applicationAvailability;
+
+    // Readiness only flips after startup runners, including the warm-up, have finished
     @GetMapping("/health")
-    public String health() { return "OK"; }
+    public ResponseEntity<String> health() {
+        if (applicationAvailability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("WARMING_UP");
+        }
+        return ResponseEntity.ok("OK");
+    }
 
 }
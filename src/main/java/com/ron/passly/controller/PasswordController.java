@@ -1,12 +1,32 @@
 package com.ron.passly.controller;
 
-import com.ron.passly.model.Password;
+import com.ron.passly.datasource.ReadYourWritesTracker;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.dto.ImportResult;
+import com.ron.passly.dto.PasswordPage;
+import com.ron.passly.dto.VaultChanges;
 import com.ron.passly.service.PasswordService;
+import com.ron.passly.service.VaultExportService;
+import com.ron.passly.service.VaultImportService;
+import com.ron.passly.service.VaultSyncService;
+import com.ron.passly.service.VaultVersionService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/password")
@@ -15,6 +35,86 @@ public class PasswordController {
 
 
     private final PasswordService passwordService;
+    private final VaultImportService vaultImportService;
+    private final VaultExportService vaultExportService;
+    private final VaultSyncService vaultSyncService;
+    private final VaultVersionService vaultVersionService;
+
+    // Pass the returned nextCursor back as ?cursor= to read the following page
+    @GetMapping
+    public PasswordPage listPasswords(@AuthenticationPrincipal AuthUser authUser,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "" + PasswordService.DEFAULT_PAGE_SIZE) int limit,
+                                      WebRequest webRequest) {
+        if (notModified(authUser, webRequest)) {
+            return null;
+        }
+        try (ReadYourWritesTracker.Binding ignored = vaultVersionService.readAtCurrentVersion()) {
+            return passwordService.listPasswords(authUser.id(), cursor, limit);
+        }
+    }
+
+    // Entries whose name contains q (case-insensitive), best matches first; paged like the listing
+    @GetMapping("/search")
+    public PasswordPage searchPasswords(@AuthenticationPrincipal AuthUser authUser,
+                                        @RequestParam("q") String term,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "" + PasswordService.DEFAULT_PAGE_SIZE) int limit,
+                                        WebRequest webRequest) {
+        if (notModified(authUser, webRequest)) {
+            return null;
+        }
+        try (ReadYourWritesTracker.Binding ignored = vaultVersionService.readAtCurrentVersion()) {
+            return passwordService.searchPasswords(authUser.id(), term, cursor, limit);
+        }
+    }
+
+    // Without a cursor: every live entry. With one: only what changed since. 410 means start over without a cursor
+    @GetMapping("/sync")
+    public VaultChanges syncPasswords(@AuthenticationPrincipal AuthUser authUser,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "" + VaultSyncService.DEFAULT_PAGE_SIZE) int limit,
+                                      WebRequest webRequest) {
+        if (notModified(authUser, webRequest)) {
+            return null;
+        }
+        try (ReadYourWritesTracker.Binding ignored = vaultVersionService.readAtCurrentVersion()) {
+            return vaultSyncService.changesSince(authUser.id(), cursor, limit);
+        }
+    }
+
+    // Body is streamed straight from the request, not bound as a @RequestBody, so any size is fine.
+    // With If-Match, the import is refused with 412 unless the vault is still at that ETag.
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ImportResult importPasswords(@AuthenticationPrincipal AuthUser authUser,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                        HttpServletRequest request) throws IOException {
+        Long expectedVersion = VaultVersionService.parseIfMatch(ifMatch);
+        return vaultImportService.importEntries(authUser, request.getInputStream(), expectedVersion);
+    }
 
+    // Runs on the MVC async executor (see WebConfig), which also bounds concurrent exports
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportPasswords(@AuthenticationPrincipal AuthUser authUser,
+                                                                 WebRequest webRequest) {
+        if (notModified(authUser, webRequest)) {
+            return null;
+        }
+        UUID userId = authUser.id();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"passly-export.ndjson\"")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(out -> {
+                    // Streams on another thread, so the binding is taken there
+                    try (ReadYourWritesTracker.Binding ignored = vaultVersionService.readAtCurrentVersion()) {
+                        vaultExportService.writeExport(userId, out);
+                    }
+                });
+    }
 
+    // Answers If-None-Match from the cached vault version, before any vault row is read or decrypted.
+    // Also sets the ETag header on the full response.
+    private boolean notModified(AuthUser authUser, WebRequest webRequest) {
+        return webRequest.checkNotModified(VaultVersionService.etag(vaultVersionService.currentVersion(authUser.id())));
+    }
 }
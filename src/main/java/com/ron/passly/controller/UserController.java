@@ -1,14 +1,22 @@
 package com.ron.passly.controller;
 
-import com.ron.passly.model.User;
+import com.ron.passly.dto.AdminUserPage;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.dto.CreateUserRequest;
+import com.ron.passly.dto.MessageResponse;
+import com.ron.passly.dto.UserResponse;
+import com.ron.passly.model.Roles;
+import com.ron.passly.service.AuthService;
+import com.ron.passly.service.UserDeletionService;
 import com.ron.passly.service.UserService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users")
@@ -16,22 +24,33 @@ import java.util.UUID;
 public class UserController {
 
     private final UserService userService;
+    private final AuthService authService;
 
     @PostMapping
-    public User createUser(@RequestBody User user) {
-        return userService.createUser(user);
+    public UserResponse createUser(@Valid @RequestBody CreateUserRequest request) {
+        return UserResponse.from(authService.createUser(request));
     }
 
     @GetMapping
-    @PreAuthorize("hasRole('ADMIN')")
-    public List<User> findAll() {
-        return userService.findAll();
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public AdminUserPage listUsers(@RequestParam(required = false) String cursor,
+                                   @RequestParam(required = false) String emailPrefix,
+                                   @RequestParam(defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit) {
+        return userService.listUsers(cursor, emailPrefix, limit);
     }
 
-    @PreAuthorize("hasRole('ADMIN')")
+    // Admins delete any account, everyone else only their own: shredded vaults cannot be restored
     @DeleteMapping("/email/{email}")
-    public ResponseEntity<String> deleteUserByEmail(@PathVariable String email) {
-        userService.deleteUserByEmail(email);
-        return ResponseEntity.ok("User deleted successfully");
+    public ResponseEntity<MessageResponse> deleteUserByEmail(@AuthenticationPrincipal AuthUser authUser,
+                                                             @PathVariable String email) {
+        if (!authUser.roles().contains(Roles.ADMIN) && !userService.findByEmail(email)
+                .map(user -> user.getId().equals(authUser.id()))
+                .orElse(false)) {
+            throw new AccessDeniedException("Not allowed to delete user " + email);
+        }
+        if (userService.deleteUserByEmail(email) == UserDeletionService.Outcome.SCHEDULED) {
+            return ResponseEntity.accepted().body(new MessageResponse("User deletion scheduled"));
+        }
+        return ResponseEntity.ok(new MessageResponse("User deleted successfully"));
     }
 }
@@ -0,0 +1,375 @@
+package com.ron.passly.datasource;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Moves a vault table onto declarative hash partitioning by user_id while the application keeps running.
+ *
+ * 1. prepare: creates {table}_partitioned with the same columns, indexes and foreign keys (unique keys
+ *    get user_id prepended, as PostgreSQL requires) and a trigger on the old table that mirrors every
+ *    insert, update and delete into it.
+ * 2. backfill: copies the old rows in id order, a batch per transaction, pausing between batches.
+ *    Source rows are locked FOR KEY SHARE, so a concurrent delete waits and its mirror then removes the copy.
+ * 3. cutover: one short transaction swaps the names and moves the triggers onto the new table.
+ *    The old table is kept as {table}_unpartitioned, without triggers or foreign keys, until dropped by hand.
+ *
+ * Progress lives in partition_migrations (V6): a restart resumes where it stopped, and every step takes
+ * an advisory lock, so nodes started with the same settings cooperate instead of racing.
+ * Sharded, each shard is migrated in turn.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("!'${partitioning.migrate:}'.isBlank()")
+public class HashPartitionMigrator {
+
+    enum Table {
+        PASSWORDS("passwords", "id"),
+        PASSWORD_TOMBSTONES("password_tombstones", "password_id");
+
+        final String name;
+        final String idColumn;
+
+        Table(String name, String idColumn) {
+            this.name = name;
+            this.idColumn = idColumn;
+        }
+
+        static Table of(String name) {
+            return Arrays.stream(values())
+                    .filter(table -> table.name.equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Cannot partition table " + name));
+        }
+    }
+
+    static final String PARTITION_KEY = "user_id";
+    private static final String NEW_SUFFIX = "_partitioned";
+    private static final String OLD_SUFFIX = "_unpartitioned";
+    // Indexes on the new table carry this until the cutover renames them to the old table's names
+    private static final String NAME_SUFFIX = "_part";
+    private static final int CUTOVER_ATTEMPTS = 10;
+
+    private final JdbcTemplate jdbc;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transaction;
+    private final List<Table> tables;
+    private final int partitions;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Duration lockTimeout;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "partition-migrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HashPartitionMigrator(JdbcTemplate jdbc,
+                                 ShardRouter shardRouter,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${partitioning.migrate}") List<String> tables,
+                                 @Value("${partitioning.partitions:16}") int partitions,
+                                 @Value("${partitioning.batch-size:5000}") int batchSize,
+                                 @Value("${partitioning.batch-pause:50ms}") Duration batchPause,
+                                 @Value("${partitioning.cutover-lock-timeout:5s}") Duration lockTimeout) {
+        this.jdbc = jdbc;
+        this.shardRouter = shardRouter;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.tables = tables.stream().map(String::trim).filter(name -> !name.isEmpty()).map(Table::of).toList();
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker.execute(() -> {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                try (ShardRouter.Binding ignored = shardRouter.bind(shard)) {
+                    if (!migrateAll()) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    private boolean migrateAll() {
+        for (Table table : tables) {
+            try {
+                migrate(table);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                log.warn("Partitioning of {} on shard {} stopped, restart to resume: {}",
+                        table.name, shardRouter.currentShard(), e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    void migrate(Table table) throws InterruptedException {
+        if ("DONE".equals(state(table)) || isPartitioned(table.name)) {
+            log.info("Table {} is already hash-partitioned", table.name);
+            return;
+        }
+        if (state(table) == null) {
+            prepare(table);
+        }
+        if ("COPYING".equals(state(table))) {
+            backfill(table);
+        }
+        cutover(table);
+    }
+
+    private void prepare(Table table) {
+        String newTable = table.name + NEW_SUFFIX;
+        boolean created = transaction.execute(status -> {
+            lock(table);
+            if (state(table) != null) {
+                return false;
+            }
+            jdbc.execute("SET LOCAL lock_timeout = " + lockTimeout.toMillis());
+            jdbc.execute("CREATE TABLE " + newTable + " (LIKE " + table.name
+                    + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING STORAGE) PARTITION BY HASH (" + PARTITION_KEY + ")");
+            for (int i = 0; i < partitions; i++) {
+                jdbc.execute("CREATE TABLE " + table.name + "_p" + i + " PARTITION OF " + newTable
+                        + " FOR VALUES WITH (MODULUS " + partitions + ", REMAINDER " + i + ")");
+            }
+            copyIndexes(table, newTable);
+            copyForeignKeys(table, newTable);
+            installMirror(table, newTable);
+            jdbc.update("INSERT INTO partition_migrations (table_name, partitions, state) VALUES (?, ?, 'COPYING')",
+                    table.name, partitions);
+            return true;
+        });
+        if (created) {
+            log.info("Created {} with {} hash partitions, mirroring writes from {}", newTable, partitions, table.name);
+        }
+    }
+
+    private void copyIndexes(Table table, String newTable) {
+        List<Map<String, Object>> indexes = jdbc.queryForList("""
+                SELECT i.relname AS name, x.indisprimary AS is_primary, x.indisunique AS is_unique,
+                       c.conname IS NOT NULL AS is_constraint, pg_get_indexdef(x.indexrelid) AS definition,
+                       array_to_string(ARRAY(
+                           SELECT a.attname FROM unnest(x.indkey::int2[]) WITH ORDINALITY k(attnum, ord)
+                           JOIN pg_attribute a ON a.attrelid = x.indrelid AND a.attnum = k.attnum
+                           WHERE k.ord <= x.indnkeyatts
+                           ORDER BY k.ord), ',') AS columns
+                FROM pg_index x
+                JOIN pg_class i ON i.oid = x.indexrelid
+                LEFT JOIN pg_constraint c ON c.conindid = x.indexrelid AND c.conrelid = x.indrelid
+                WHERE x.indrelid = ?::regclass
+                """, table.name);
+
+        for (Map<String, Object> index : indexes) {
+            String name = (String) index.get("name");
+            List<String> columns = new ArrayList<>(List.of(((String) index.get("columns")).split(",")));
+            boolean keyed = columns.contains(PARTITION_KEY);
+
+            if ((Boolean) index.get("is_constraint")) {
+                // Unique only per user from here on. Ids are UUIDv7 (TimeOrderedUuidGenerator), whose
+                // 62 random bits still make a clash between users practically impossible
+                if (!keyed) {
+                    columns.add(0, PARTITION_KEY);
+                    jdbc.execute("CREATE INDEX idx_" + table.name + "_" + table.idColumn + NAME_SUFFIX
+                            + " ON " + newTable + " (" + table.idColumn + ")");
+                }
+                String kind = (Boolean) index.get("is_primary") ? "PRIMARY KEY" : "UNIQUE";
+                jdbc.execute("ALTER TABLE " + newTable + " ADD CONSTRAINT " + name + NAME_SUFFIX
+                        + " " + kind + " (" + String.join(", ", columns) + ")");
+            } else if ((Boolean) index.get("is_unique") && !keyed) {
+                throw new IllegalStateException("Unique index " + name + " does not include " + PARTITION_KEY);
+            } else {
+                String definition = (String) index.get("definition");
+                jdbc.execute(definition.replaceFirst("^CREATE (UNIQUE )?INDEX \\S+ ON \\S+ ",
+                        "CREATE $1INDEX " + name + NAME_SUFFIX + " ON " + newTable + " "));
+            }
+        }
+    }
+
+    // Constraint names are per table, so the foreign keys keep theirs (the partitions inherit them)
+    private void copyForeignKeys(Table table, String newTable) {
+        jdbc.queryForList("SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint "
+                        + "WHERE conrelid = ?::regclass AND contype = 'f'", table.name)
+                .forEach(fk -> jdbc.execute("ALTER TABLE " + newTable + " ADD CONSTRAINT " + fk.get("conname")
+                        + " " + fk.get("definition")));
+    }
+
+    // Row values are copied as written, after the old table's BEFORE triggers have stamped them
+    private void installMirror(Table table, String newTable) {
+        List<String> columns = jdbc.queryForList("SELECT attname FROM pg_attribute WHERE attrelid = ?::regclass "
+                + "AND attnum > 0 AND NOT attisdropped ORDER BY attnum", String.class, table.name);
+        String assignments = columns.stream()
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+        String function = mirrorName(table);
+
+        jdbc.execute("CREATE OR REPLACE FUNCTION " + function + "() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "BEGIN\n"
+                + "    IF TG_OP = 'DELETE' THEN\n"
+                + "        DELETE FROM " + newTable + " WHERE " + PARTITION_KEY + " = OLD." + PARTITION_KEY
+                + " AND " + table.idColumn + " = OLD." + table.idColumn + ";\n"
+                + "        RETURN OLD;\n"
+                + "    END IF;\n"
+                + "    INSERT INTO " + newTable + " VALUES (NEW.*)\n"
+                + "    ON CONFLICT (" + PARTITION_KEY + ", " + table.idColumn + ") DO UPDATE SET " + assignments + ";\n"
+                + "    RETURN NEW;\n"
+                + "END\n"
+                + "$$");
+        jdbc.execute("CREATE TRIGGER " + function + " AFTER INSERT OR UPDATE OR DELETE ON " + table.name
+                + " FOR EACH ROW EXECUTE FUNCTION " + function + "()");
+    }
+
+    private void backfill(Table table) throws InterruptedException {
+        String from = "SELECT * FROM " + table.name;
+        String batchSql = "WITH batch AS (%s ORDER BY " + table.idColumn + " LIMIT ? FOR KEY SHARE), "
+                + "copied AS (INSERT INTO " + table.name + NEW_SUFFIX + " SELECT * FROM batch ON CONFLICT DO NOTHING) "
+                + "SELECT (SELECT count(*) FROM batch) AS rows, "
+                + "(SELECT " + table.idColumn + " FROM batch ORDER BY " + table.idColumn + " DESC LIMIT 1) AS last_id";
+        String firstBatch = batchSql.formatted(from);
+        String nextBatch = batchSql.formatted(from + " WHERE " + table.idColumn + " > ?");
+
+        while (true) {
+            Long copied = transaction.execute(status -> {
+                lock(table);
+                Map<String, Object> progress = jdbc.queryForMap(
+                        "SELECT state, last_id, copied FROM partition_migrations WHERE table_name = ?", table.name);
+                if (!"COPYING".equals(progress.get("state"))) {
+                    return null;
+                }
+
+                UUID lastId = (UUID) progress.get("last_id");
+                Map<String, Object> batch = lastId == null
+                        ? jdbc.queryForMap(firstBatch, batchSize)
+                        : jdbc.queryForMap(nextBatch, lastId, batchSize);
+                long rows = ((Number) batch.get("rows")).longValue();
+                long total = ((Number) progress.get("copied")).longValue() + rows;
+                if (rows == 0) {
+                    jdbc.update("UPDATE partition_migrations SET state = 'COPIED', updated_at = now() "
+                            + "WHERE table_name = ?", table.name);
+                    log.info("Copied {} rows of {} into {}", total, table.name, table.name + NEW_SUFFIX);
+                    return null;
+                }
+                jdbc.update("UPDATE partition_migrations SET last_id = ?, copied = ?, updated_at = now() "
+                        + "WHERE table_name = ?", batch.get("last_id"), total, table.name);
+                return total;
+            });
+            if (copied == null) {
+                return;
+            }
+            if (copied % (batchSize * 100L) < batchSize) {
+                log.info("Copied {} rows of {} so far", copied, table.name);
+            }
+            Thread.sleep(batchPause.toMillis());
+        }
+    }
+
+    // Waits at most lockTimeout for the exclusive lock, so a long-running query delays the swap, never the application
+    private void cutover(Table table) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transaction.executeWithoutResult(status -> swap(table));
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == CUTOVER_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Cutover of {} could not lock the table (attempt {}), retrying", table.name, attempt);
+                Thread.sleep(lockTimeout.toMillis());
+            }
+        }
+    }
+
+    private void swap(Table table) {
+        String oldTable = table.name + OLD_SUFFIX;
+        String newTable = table.name + NEW_SUFFIX;
+
+        lock(table);
+        if (!"COPIED".equals(state(table))) {
+            return;
+        }
+        jdbc.execute("SET LOCAL lock_timeout = " + lockTimeout.toMillis());
+        jdbc.execute("LOCK TABLE " + table.name + ", " + newTable + " IN ACCESS EXCLUSIVE MODE");
+
+        List<Map<String, Object>> triggers = jdbc.queryForList("SELECT tgname, pg_get_triggerdef(oid) AS definition "
+                + "FROM pg_trigger WHERE tgrelid = ?::regclass AND NOT tgisinternal", table.name);
+        for (Map<String, Object> trigger : triggers) {
+            jdbc.execute("DROP TRIGGER " + trigger.get("tgname") + " ON " + table.name);
+        }
+        jdbc.execute("DROP FUNCTION " + mirrorName(table) + "()");
+        // The old copy must not block deletes of the rows it references
+        jdbc.queryForList("SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'f'",
+                        String.class, table.name)
+                .forEach(fk -> jdbc.execute("ALTER TABLE " + table.name + " DROP CONSTRAINT " + fk));
+
+        jdbc.queryForList("SELECT indexrelid::regclass::text FROM pg_index WHERE indrelid = ?::regclass",
+                        String.class, table.name)
+                .forEach(index -> jdbc.execute("ALTER INDEX " + index + " RENAME TO " + index + OLD_SUFFIX));
+        jdbc.execute("ALTER TABLE " + table.name + " RENAME TO " + oldTable);
+        jdbc.execute("ALTER TABLE " + newTable + " RENAME TO " + table.name);
+
+        jdbc.queryForList("SELECT indexrelid::regclass::text FROM pg_index WHERE indrelid = ?::regclass",
+                        String.class, table.name).stream()
+                .filter(index -> index.endsWith(NAME_SUFFIX))
+                .forEach(index -> jdbc.execute("ALTER INDEX " + index + " RENAME TO " + stripSuffix(index)));
+
+        // Definitions name the table, which now resolves to the partitioned one
+        triggers.stream()
+                .filter(trigger -> !mirrorName(table).equals(trigger.get("tgname")))
+                .forEach(trigger -> jdbc.execute((String) trigger.get("definition")));
+
+        jdbc.update("UPDATE partition_migrations SET state = 'DONE', updated_at = now() WHERE table_name = ?", table.name);
+        log.info("{} is now hash-partitioned; drop {} once verified", table.name, oldTable);
+    }
+
+    private String state(Table table) {
+        return jdbc.queryForList("SELECT state FROM partition_migrations WHERE table_name = ?", String.class, table.name)
+                .stream().findFirst().orElse(null);
+    }
+
+    private boolean isPartitioned(String table) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT relkind = 'p' FROM pg_class WHERE oid = ?::regclass", Boolean.class, table));
+    }
+
+    private void lock(Table table) {
+        jdbc.queryForList("SELECT pg_advisory_xact_lock(hashtext(?))", "partition-migration:" + table.name);
+    }
+
+    private static String mirrorName(Table table) {
+        return table.name + "_partition_mirror";
+    }
+
+    private static String stripSuffix(String name) {
+        return name.substring(0, name.length() - NAME_SUFFIX.length());
+    }
+}
@@ -0,0 +1,63 @@
+package com.ron.passly.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ * Must sit behind a LazyConnectionDataSourceProxy: the transaction's read-only flag is only
+ * known once it has begun, so the physical connection has to be fetched at the first statement.
+ * It also relies on spring.jpa.open-in-view being off, so that each transaction gets its own
+ * connection instead of the one the request's first transaction took.
+ * Reads fall back to the primary when no replica is healthy or the chosen one refuses a
+ * connection, while the caller is inside its read-your-writes window, and while a thread has
+ * pinned its reads with ReadYourWritesTracker.readPrimary.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final ReplicaSet replicas;
+    private final ReadYourWritesTracker readYourWrites;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaSet replicas, ReadYourWritesTracker readYourWrites) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.recordWrite(readYourWrites.currentSubject());
+            }
+            return primary.getConnection();
+        }
+
+        if (readYourWrites.mustReadPrimary()) {
+            return primary.getConnection();
+        }
+
+        ReplicaSet.Replica replica = replicas.nextHealthy();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            log.debug("Replica {} refused a connection, reading from the primary: {}", replica.getName(), e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Routing data source uses the configured credentials");
+    }
+}
@@ -0,0 +1,105 @@
+package com.ron.passly.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Remembers who wrote recently so their own reads are kept on the primary for a short window.
+ * The subject is the authenticated user's email, or one bound explicitly with readAs for
+ * lookups that run before authentication (login, JWT filter).
+ * The window is per node; it should be at least the replica max lag.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final Cache<String, Boolean> recentWriters;
+    private final ThreadLocal<String> boundSubject = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> primaryOnly = new ThreadLocal<>();
+
+    public ReadYourWritesTracker(@Value("${datasource.read-your-writes.window:10s}") Duration window,
+                                 @Value("${datasource.read-your-writes.maximum-size:100000}") long maximumSize) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    // Starts the window when the surrounding transaction commits, or now if there is none
+    public void recordWrite(String subject) {
+        if (subject == null) {
+            return;
+        }
+        String key = subject.toLowerCase(Locale.ROOT);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(key, Boolean.TRUE);
+                }
+            });
+        } else {
+            recentWriters.put(key, Boolean.TRUE);
+        }
+    }
+
+    public interface Binding extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public boolean mustReadPrimary() {
+        if (primaryOnly.get() != null) {
+            return true;
+        }
+        String subject = currentSubject();
+        return subject != null && recentWriters.getIfPresent(subject.toLowerCase(Locale.ROOT)) != null;
+    }
+
+    // Runs read with subject as the reader, for lookups made on behalf of a not yet authenticated user
+    public <T> T readAs(String subject, Supplier<T> read) {
+        String previous = boundSubject.get();
+        boundSubject.set(subject);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                boundSubject.remove();
+            } else {
+                boundSubject.set(previous);
+            }
+        }
+    }
+
+    // Keeps this thread's reads on the primary until the binding is closed, whoever the reader is
+    public Binding readPrimary() {
+        if (primaryOnly.get() != null) {
+            return () -> { };
+        }
+        primaryOnly.set(Boolean.TRUE);
+        return primaryOnly::remove;
+    }
+
+    public String currentSubject() {
+        String subject = boundSubject.get();
+        if (subject != null) {
+            return subject;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
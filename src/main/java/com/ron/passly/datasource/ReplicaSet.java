@@ -0,0 +1,154 @@
+package com.ron.passly.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read replicas, with a background check of reachability and replication lag.
+ * A replica serves reads only while its last check passed and its lag was within maxLag;
+ * replicas start out of rotation until their first check.
+ */
+@Slf4j
+public class ReplicaSet implements Closeable {
+
+    // Seconds behind the primary; 0 when caught up with everything received (an idle primary
+    // would otherwise look like growing lag), -1 when nothing has been replayed yet or the WAL
+    // receiver is not streaming: replay then catches up with a receive position that no longer
+    // moves. The receiver's row exists only while it runs; its status is NULL to roles without
+    // pg_read_all_stats, so a visible row with a hidden status counts as streaming.
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver
+                                        WHERE COALESCE(status, 'streaming') = 'streaming') THEN -1
+                       WHEN pg_last_wal_replay_lsn() >= pg_last_wal_receive_lsn() THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), -1)
+                   END""";
+
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaSet(List<HikariDataSource> dataSources, Duration maxLag) {
+        this.replicas = dataSources.stream().map(Replica::new).toList();
+        this.maxLag = maxLag;
+    }
+
+    public void start(Duration checkInterval) {
+        checker.scheduleWithFixedDelay(this::checkAll, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Round robin over the healthy replicas; null when none can serve reads
+    public Replica nextHealthy() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    void checkAll() {
+        for (Replica replica : replicas) {
+            replica.check();
+        }
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("healthy", replica.healthy);
+            state.put("lagSeconds", replica.lagSeconds);
+            if (replica.lastError != null) {
+                state.put("error", replica.lastError);
+            }
+            details.put(replica.getName(), state);
+        }
+        return details;
+    }
+
+    public boolean anyHealthy() {
+        return replicas.stream().anyMatch(replica -> replica.healthy);
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    public final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy;
+        private volatile double lagSeconds = -1;
+        private volatile String lastError;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return dataSource.getPoolName();
+        }
+
+        public Connection getConnection() throws SQLException {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                markDown(e.getMessage());
+                throw e;
+            }
+        }
+
+        private void check() {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(2);
+                try (ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                    rs.next();
+                    lagSeconds = rs.getDouble(1);
+                }
+                boolean withinLag = lagSeconds >= 0 && lagSeconds * 1000 <= maxLag.toMillis();
+                if (withinLag != healthy) {
+                    log.info("Replica {} {} (lag {}s)", getName(), withinLag ? "back in rotation" : "lagging, reads go elsewhere", lagSeconds);
+                }
+                healthy = withinLag;
+                lastError = null;
+            } catch (Exception e) {
+                markDown(e.getMessage());
+            }
+        }
+
+        private void markDown(String reason) {
+            if (healthy) {
+                log.warn("Replica {} out of rotation: {}", getName(), reason);
+            }
+            healthy = false;
+            lastError = reason;
+        }
+    }
+}
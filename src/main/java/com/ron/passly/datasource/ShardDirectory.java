@@ -0,0 +1,102 @@
+package com.ron.passly.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where each user lives: user_directory (V7) on shard 0, which also keeps emails unique across shards.
+ * Lookups are cached per node for a short TTL; misses are not cached, so a user registered on
+ * another node can sign in at once. After a move another node's entry can point at the old shard
+ * until it expires, where the user is simply not found yet.
+ */
+@Slf4j
+public class ShardDirectory {
+
+    private final JdbcTemplate jdbc;
+    private final Cache<UUID, Integer> byUser;
+    private final Cache<String, Integer> byEmail;
+
+    public ShardDirectory(JdbcTemplate jdbc, Duration ttl, long maximumSize) {
+        this.jdbc = jdbc;
+        this.byUser = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maximumSize).build();
+        this.byEmail = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maximumSize).build();
+    }
+
+    public Optional<Integer> shardOf(UUID userId) {
+        Integer cached = byUser.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Integer> shard = first(jdbc.queryForList(
+                "SELECT shard FROM user_directory WHERE user_id = ?", Integer.class, userId));
+        shard.ifPresent(value -> byUser.put(userId, value));
+        return shard;
+    }
+
+    public Optional<Integer> shardOfEmail(String email) {
+        Integer cached = byEmail.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Integer> shard = first(jdbc.queryForList(
+                "SELECT shard FROM user_directory WHERE email = ?", Integer.class, email));
+        shard.ifPresent(value -> byEmail.put(email, value));
+        return shard;
+    }
+
+    public void register(UUID userId, String email, int shard) {
+        jdbc.update("INSERT INTO user_directory (user_id, email, shard) VALUES (?, ?, ?)", userId, email, shard);
+        byUser.put(userId, shard);
+        byEmail.put(email, shard);
+    }
+
+    public void unregister(UUID userId) {
+        jdbc.queryForList("DELETE FROM user_directory WHERE user_id = ? RETURNING email", String.class, userId)
+                .forEach(byEmail::invalidate);
+        byUser.invalidate(userId);
+    }
+
+    public void move(UUID userId, int shard) {
+        jdbc.queryForList("UPDATE user_directory SET shard = ? WHERE user_id = ? RETURNING email",
+                String.class, shard, userId).forEach(email -> byEmail.put(email, shard));
+        byUser.put(userId, shard);
+    }
+
+    // Keyset page of (user_id, shard) for the rebalancer
+    public List<Placement> placementsAfter(UUID after, int limit) {
+        String sql = "SELECT user_id, shard FROM user_directory %s ORDER BY user_id LIMIT ?";
+        return after == null
+                ? jdbc.query(sql.formatted(""), (rs, i) -> new Placement(rs.getObject(1, UUID.class), rs.getInt(2)), limit)
+                : jdbc.query(sql.formatted("WHERE user_id > ?"),
+                (rs, i) -> new Placement(rs.getObject(1, UUID.class), rs.getInt(2)), after, limit);
+    }
+
+    /**
+     * Turning sharding on for an existing database: its users are on shard 0, the directory is empty.
+     * Runs only while the directory is empty, so it is a no-op on every later start.
+     */
+    public void seedFromShardZero() {
+        if (!jdbc.queryForList("SELECT 1 FROM user_directory LIMIT 1").isEmpty()) {
+            return;
+        }
+        int seeded = jdbc.update("INSERT INTO user_directory (user_id, email, shard) SELECT id, email, 0 FROM users "
+                + "ON CONFLICT DO NOTHING");
+        if (seeded > 0) {
+            log.info("Seeded the shard directory with {} existing users on shard 0", seeded);
+        }
+    }
+
+    public record Placement(UUID userId, int shard) {
+    }
+
+    private static Optional<Integer> first(List<Integer> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
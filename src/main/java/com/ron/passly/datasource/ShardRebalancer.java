@@ -0,0 +1,250 @@
+package com.ron.passly.datasource;
+
+import com.ron.passly.config.CacheConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves users to the shard their id hashes to, e.g. after a shard was added to datasource.shards.urls.
+ * With jump hashing only about 1/n of the users move, all of them to the new shard.
+ *
+ * A move locks the source user row FOR UPDATE, which makes the user's vault writers wait, copies
+ * the user's rows to the target and deletes them from the source, both still uncommitted. Only
+ * then is the copy committed and the directory switched; the source commit comes last. Anything
+ * that fails before the switch, including a deadlock with a writer holding one of the rows being
+ * deleted, rolls the source back and removes the copy, and the user stays where they were.
+ * Writers that waited on the lock fail once the source rows are gone, as do writes sent to the
+ * old shard by nodes whose directory cache predates the move; repeated, they reach the new shard.
+ *
+ * Copied entries are renumbered by the target's change trigger, above anything the source handed
+ * out, so sync clients re-fetch a moved vault once. Other nodes may still route the user to the
+ * old shard for up to datasource.shards.directory-ttl, so rebalance when traffic is low.
+ * Runs in the background at startup with datasource.shards.rebalance=true.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("!'${datasource.shards.urls:}'.isBlank()")
+public class ShardRebalancer {
+
+    // Copy order respects the foreign keys; the user row itself is copied first
+    private static final List<String> USER_TABLES = List.of("user_encryption_keys", "passwords", "password_tombstones");
+    private static final int PAGE_SIZE = 500;
+    private static final int COPY_BATCH = 1000;
+
+    private final ShardRoutingDataSource shards;
+    private final ShardDirectory directory;
+    private final ShardRouter router;
+    private final CacheManager cacheManager;
+    private final boolean runAtStartup;
+    private final Duration movePause;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ShardRebalancer(ShardRoutingDataSource shards,
+                           ShardDirectory directory,
+                           ShardRouter router,
+                           CacheManager cacheManager,
+                           @Value("${datasource.shards.rebalance:false}") boolean runAtStartup,
+                           @Value("${datasource.shards.rebalance-pause:50ms}") Duration movePause) {
+        this.shards = shards;
+        this.directory = directory;
+        this.router = router;
+        this.cacheManager = cacheManager;
+        this.runAtStartup = runAtStartup;
+        this.movePause = movePause;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (runAtStartup) {
+            worker.execute(() -> {
+                try {
+                    rebalanceAll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.warn("Shard rebalancing stopped, restart to resume: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    // Walks the directory and moves every user not on its hashed shard; returns the number moved
+    public long rebalanceAll() throws InterruptedException {
+        long moved = 0;
+        UUID after = null;
+        List<ShardDirectory.Placement> page;
+        do {
+            page = directory.placementsAfter(after, PAGE_SIZE);
+            for (ShardDirectory.Placement placement : page) {
+                int target = router.placementOf(placement.userId());
+                if (placement.shard() != target && move(placement.userId(), placement.shard(), target)) {
+                    moved++;
+                    Thread.sleep(movePause.toMillis());
+                }
+            }
+            after = page.isEmpty() ? null : page.get(page.size() - 1).userId();
+        } while (page.size() == PAGE_SIZE && !Thread.currentThread().isInterrupted());
+
+        log.info("Shard rebalancing moved {} users", moved);
+        return moved;
+    }
+
+    // False when the user does not exist on the source or is being deleted
+    public boolean moveUser(UUID userId, int target) {
+        int source = directory.shardOf(userId).orElseThrow(() -> new IllegalArgumentException("Unknown user " + userId));
+        return source != target && move(userId, source, target);
+    }
+
+    private boolean move(UUID userId, int source, int target) {
+        try (Connection from = shards.shard(source).getConnection();
+             Connection to = shards.shard(target).getConnection()) {
+            from.setAutoCommit(false);
+            to.setAutoCommit(false);
+            boolean switched = false;
+            try {
+                if (!lockMovableUser(from, userId)) {
+                    from.rollback();
+                    return false;
+                }
+                long copied = copy(from, to, "users", "id", userId);
+                raiseChangeSequence(from, to);
+                for (String table : USER_TABLES) {
+                    copied += copy(from, to, table, "user_id", userId);
+                }
+                deleteUser(from, userId);
+                to.commit();
+
+                directory.move(userId, target);
+                switched = true;
+                from.commit();
+                evictVaultVersion(userId);
+                log.info("Moved user {} ({} rows) from shard {} to shard {}", userId, copied, source, target);
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                from.rollback();
+                to.rollback();
+                if (switched) {
+                    // Served from the target already, so it stays there; the source rows are unreachable
+                    throw new IllegalStateException("User " + userId + " moved to shard " + target
+                            + " but its rows on shard " + source + " were not deleted; delete them by hand", e);
+                }
+                deleteUser(to, userId);
+                to.commit();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Moving user " + userId + " to shard " + target + " failed", e);
+        }
+    }
+
+    private static boolean lockMovableUser(Connection from, UUID userId) throws SQLException {
+        try (PreparedStatement lock = from.prepareStatement(
+                "SELECT deletion_requested_at IS NULL FROM users WHERE id = ? FOR UPDATE")) {
+            lock.setObject(1, userId);
+            try (ResultSet rs = lock.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    // Entries copied to the target are numbered above anything a client of the source has seen
+    private static void raiseChangeSequence(Connection from, Connection to) throws SQLException {
+        long last;
+        try (PreparedStatement read = from.prepareStatement("SELECT last_value FROM vault_change_seq");
+             ResultSet rs = read.executeQuery()) {
+            rs.next();
+            last = rs.getLong(1);
+        }
+        try (PreparedStatement raise = to.prepareStatement(
+                "SELECT setval('vault_change_seq', greatest(last_value, ?)) FROM vault_change_seq")) {
+            raise.setLong(1, last);
+            raise.executeQuery().close();
+        }
+    }
+
+    // Column-generic, so the copy follows schema changes; batched so a large vault is not held in memory
+    private static long copy(Connection from, Connection to, String table, String userColumn, UUID userId)
+            throws SQLException {
+        try (PreparedStatement select = from.prepareStatement("SELECT * FROM " + table + " WHERE " + userColumn + " = ?")) {
+            select.setFetchSize(COPY_BATCH);
+            select.setObject(1, userId);
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                List<String> columns = new ArrayList<>(meta.getColumnCount());
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    columns.add(meta.getColumnName(i));
+                }
+                String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                        + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+
+                long rows = 0;
+                try (PreparedStatement write = to.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns.size(); i++) {
+                            write.setObject(i, rs.getObject(i));
+                        }
+                        write.addBatch();
+                        if (++rows % COPY_BATCH == 0) {
+                            write.executeBatch();
+                        }
+                    }
+                    if (rows % COPY_BATCH != 0) {
+                        write.executeBatch();
+                    }
+                }
+                return rows;
+            }
+        }
+    }
+
+    // Same statements as a user deletion: no tombstones, they go with the user row
+    private static void deleteUser(Connection connection, UUID userId) throws SQLException {
+        try (PreparedStatement skipTombstones = connection.prepareStatement("SELECT set_config('passly.purge', 'on', true)")) {
+            skipTombstones.executeQuery().close();
+        }
+        for (String sql : List.of("DELETE FROM passwords WHERE user_id = ?",
+                "DELETE FROM user_encryption_keys WHERE user_id = ?",
+                "DELETE FROM users WHERE id = ?")) {
+            try (PreparedStatement delete = connection.prepareStatement(sql)) {
+                delete.setObject(1, userId);
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    // vault_version changed with the renumbering
+    private void evictVaultVersion(UUID userId) {
+        Cache cache = cacheManager.getCache(CacheConfig.VAULT_VERSION_CACHE);
+        if (cache != null) {
+            cache.evict(userId);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ron.passly.datasource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard a unit of work runs on. The shard is bound to the current thread and
+ * read by ShardRoutingDataSource when a transaction fetches its connection, so bind before the
+ * first query. A transaction keeps the connection it fetched first, so binding another shard
+ * later in it changes nothing: work that visits several shards (onEachShard) must start a
+ * transaction per shard, or run outside any.
+ *
+ * A user's rows (users, keys, vault, tombstones) live together on one shard. New users are placed
+ * by jump consistent hash of their id; the directory (see ShardDirectory) records where each user
+ * actually is, which differs from the hash only while a rebalance is pending.
+ * Unsharded (datasource.shards.urls empty) there is a single shard 0 and binding is a no-op.
+ * Unbound work (startup, schema validation) runs on shard 0.
+ */
+@Component
+public class ShardRouter {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int shardCount;
+    // Resolved on first use: the directory reads through the shard pools, which route through this router
+    private final ObjectProvider<ShardDirectory> directoryProvider;
+    private volatile ShardDirectory directory;
+
+    public ShardRouter(@Value("${datasource.shards.urls:}") List<String> urls,
+                       ObjectProvider<ShardDirectory> directoryProvider) {
+        this.shardCount = Math.max(1, (int) urls.stream().filter(url -> !url.isBlank()).count());
+        this.directoryProvider = directoryProvider;
+    }
+
+    @FunctionalInterface
+    public interface Binding extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int currentShard() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    // Where the hash puts a user; only the directory says where they are now
+    public int placementOf(UUID userId) {
+        return jumpHash(userId.getMostSignificantBits() ^ userId.getLeastSignificantBits(), shardCount);
+    }
+
+    public int shardOf(UUID userId) {
+        return isSharded() ? directory().shardOf(userId).orElseGet(() -> placementOf(userId)) : 0;
+    }
+
+    // Empty when no user has this email
+    public Optional<Integer> shardOfEmail(String email) {
+        return isSharded() ? directory().shardOfEmail(email) : Optional.of(0);
+    }
+
+    public Binding bind(int shard) {
+        if (!isSharded()) {
+            return () -> { };
+        }
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("No shard " + shard);
+        }
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public Binding bindUser(UUID userId) {
+        return bind(shardOf(userId));
+    }
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        try (Binding ignored = bind(shard)) {
+            return work.get();
+        }
+    }
+
+    // Scatter: runs work once per shard, in shard order
+    public <T> List<T> onEachShard(IntFunction<T> work) {
+        List<T> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            try (Binding ignored = bind(shard)) {
+                results.add(work.apply(shard));
+            }
+        }
+        return results;
+    }
+
+    public void forEachShard(IntConsumer work) {
+        onEachShard(shard -> {
+            work.accept(shard);
+            return null;
+        });
+    }
+
+    // Claims the email across all shards; throws DuplicateKeyException if another user has it
+    public void register(UUID userId, String email, int shard) {
+        if (isSharded()) {
+            directory().register(userId, email, shard);
+        }
+    }
+
+    public void unregister(UUID userId) {
+        if (isSharded()) {
+            directory().unregister(userId);
+        }
+    }
+
+    private ShardDirectory directory() {
+        ShardDirectory resolved = directory;
+        if (resolved == null) {
+            resolved = directoryProvider.getObject();
+            directory = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Jump consistent hash (Lamping and Veach, 2014): maps a key to one of buckets with an even
+     * spread, and growing from n to n + 1 buckets moves only about 1/(n + 1) of the keys, all to the new one.
+     */
+    public static int jumpHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
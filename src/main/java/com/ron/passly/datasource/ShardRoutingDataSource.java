@@ -0,0 +1,47 @@
+package com.ron.passly.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Hands out connections from the pool of the shard bound by ShardRouter. Must sit behind a
+ * LazyConnectionDataSourceProxy, so a binding made at the start of a transactional method still
+ * decides where that transaction runs.
+ */
+public class ShardRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final List<HikariDataSource> shards;
+    private final ShardRouter router;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards, ShardRouter router) {
+        this.shards = List.copyOf(shards);
+        this.router = router;
+    }
+
+    public HikariDataSource shard(int shard) {
+        return shards.get(shard);
+    }
+
+    public List<HikariDataSource> shards() {
+        return shards;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return shards.get(router.currentShard()).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Routing data source uses the configured credentials");
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ron.passly.dto;
+
+import java.util.List;
+
+/**
+ * A page of the admin user listing. nextCursor is null on the last page.
+ * estimatedTotal is the planner's row estimate for the whole table (null when filtered),
+ * good enough for a pager without paying for an exact COUNT(*).
+ */
+public record AdminUserPage(
+        List<AdminUserView> items,
+        String nextCursor,
+        Long estimatedTotal
+) {
+}
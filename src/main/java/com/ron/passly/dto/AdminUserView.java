@@ -0,0 +1,27 @@
+package com.ron.passly.dto;
+
+import com.ron.passly.model.Roles;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A user as shown in the admin listing. Never carries the password hash or vault data.
+ */
+public record AdminUserView(
+        UUID id,
+        String email,
+        String firstName,
+        String lastName,
+        Set<Roles> roles
+) {
+
+    public AdminUserView {
+        roles = Set.copyOf(roles);
+    }
+
+    // Target of the listing projection, roles come from users.roles_mask in the same row
+    public AdminUserView(UUID id, String email, String firstName, String lastName, int rolesMask) {
+        this(id, email, firstName, lastName, Roles.fromMask(rolesMask));
+    }
+}
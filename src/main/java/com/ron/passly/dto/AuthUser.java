@@ -1,21 +1,50 @@
 package com.ron.passly.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ron.passly.model.Roles;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.ron.passly.security.RoleAuthorities;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Set;
 import java.util.UUID;
 
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class AuthUser {
-    private UUID id;
-    private String email;
-    private String password;
-    private List<Roles> roles;
-    private String firstName;
-    private String lastName;
+/**
+ * Immutable snapshot of the data needed to authenticate a user.
+ * Safe to cache: it holds no entity references or lazy associations.
+ */
+public record AuthUser(
+        UUID id,
+        String email,
+        String password,
+        Set<Roles> roles,
+        String firstName,
+        String lastName
+) implements AuthenticatedPrincipal {
+
+    public AuthUser {
+        roles = Set.copyOf(roles);
+    }
+
+    // Target of the single-row auth projection, roles come straight from users.roles_mask
+    public AuthUser(UUID id, String email, String password, int rolesMask, String firstName, String lastName) {
+        this(id, email, password, Roles.fromMask(rolesMask), firstName, lastName);
+    }
+
+    @JsonIgnore
+    public Collection<GrantedAuthority> getAuthorities() {
+        return RoleAuthorities.forRoles(roles);
+    }
+
+    @JsonIgnore
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthUser[id=" + id + ", email=" + email + ", roles=" + roles + "]";
+    }
 }
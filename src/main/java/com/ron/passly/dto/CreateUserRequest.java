@@ -0,0 +1,38 @@
+package com.ron.passly.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Account created through POST /api/users, with the same rules as a registration.
+ * Only these fields are bound: id, roles and deletion state are always set by the server.
+ */
+public record CreateUserRequest(
+
+        @NotBlank(message = "First name is required")
+        @Size(min = 3, max = 15, message = "First Name must be between 3 and 15 characters")
+        @Pattern(regexp = "^[a-zA-Z\\s'-]+$", message = "First name contains invalid characters")
+        String firstName,
+
+        @NotBlank(message = "Last name is required")
+        @Size(min = 3, max = 15, message = "Last Name must be between 3 and 15 characters")
+        @Pattern(regexp = "^[a-zA-Z\\s'-]+$", message = "Last name contains invalid characters")
+        String lastName,
+
+        @NotBlank(message = "Email is required")
+        @Email(message = "Please provide a valid email address")
+        @Size(max = 100, message = "Email must not exceed 100 characters")
+        @Pattern(regexp = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$", message = "Email format is invalid")
+        String email,
+
+        @NotBlank(message = "Password is required")
+        @Size(min = 6, max = 30, message = "Password length is invalid")
+        @Pattern(
+                regexp = "^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)(?=.*[@$!%*?&])[A-Za-z\\d@$!%*?&]+$",
+                message = "Password must contain uppercase, lowercase, digit and special character"
+        )
+        String password
+) {
+}
@@ -1,45 +1,27 @@
 package com.ron.passly.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class ErrorResponse {
-
-    private String message;
-    private int status;
-    private LocalDateTime timestamp;
-    private String path;
-    private List<ValidationError> validationErrors;
+public record ErrorResponse(
+        String message,
+        int status,
+        LocalDateTime timestamp,
+        String path,
+        List<ValidationError> validationErrors
+) {
 
     public ErrorResponse(String message, int status, String path) {
-        this.message = message;
-        this.status = status;
-        this.timestamp = LocalDateTime.now();
-        this.path = path;
+        this(message, status, LocalDateTime.now(), path, null);
     }
 
     public ErrorResponse(String message, int status, String path, List<ValidationError> validationErrors) {
-        this.message = message;
-        this.status = status;
-        this.timestamp = LocalDateTime.now();
-        this.path = path;
-        this.validationErrors = validationErrors;
+        this(message, status, LocalDateTime.now(), path, validationErrors);
     }
 
-    @Data
-    @AllArgsConstructor
-    @NoArgsConstructor
-    public static class ValidationError {
-        private String field;
-        private String message;
+    public record ValidationError(String field, String message) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package com.ron.passly.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * One entry of a vault import. The value is plaintext and is encrypted server-side with the user's data key.
+ * Extra fields exported by other password managers are ignored.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ImportEntry(
+        String name,
+        String value
+) {
+}
@@ -0,0 +1,20 @@
+package com.ron.passly.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a vault import. Only the first failures are listed; failed is the full count.
+ */
+public record ImportResult(
+        int imported,
+        int failed,
+        List<Failure> failures,
+        boolean failuresTruncated
+) {
+
+    /**
+     * index is the entry's position in the uploaded array, starting at 0.
+     */
+    public record Failure(int index, String name, String reason) {
+    }
+}
@@ -0,0 +1,4 @@
+package com.ron.passly.dto;
+
+public record MessageResponse(String message) {
+}
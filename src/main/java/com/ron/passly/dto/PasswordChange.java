@@ -0,0 +1,20 @@
+package com.ron.passly.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A live vault entry with the change sequence it was last written at, as read by delta sync.
+ */
+public record PasswordChange(
+        UUID id,
+        String name,
+        LocalDateTime updatedAt,
+        String encryptedValue,
+        long changeSeq
+) {
+
+    public PasswordSummary toSummary() {
+        return new PasswordSummary(id, name, updatedAt, encryptedValue);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ron.passly.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A vault entry found by name search, with its rank: 0 for the whole name, 1 for a prefix,
+ * 2 for any other substring (all case-insensitive). Results are ordered by (rank, name, id).
+ */
+public record PasswordMatch(
+        UUID id,
+        String name,
+        LocalDateTime updatedAt,
+        String encryptedValue,
+        int rank
+) {
+    public static final int EXACT = 0;
+    public static final int PREFIX = 1;
+    public static final int SUBSTRING = 2;
+
+    public PasswordSummary toSummary() {
+        return new PasswordSummary(id, name, updatedAt, encryptedValue);
+    }
+}
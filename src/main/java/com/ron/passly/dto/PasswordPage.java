@@ -0,0 +1,12 @@
+package com.ron.passly.dto;
+
+import java.util.List;
+
+/**
+ * A page of the vault listing. nextCursor is null on the last page.
+ */
+public record PasswordPage(
+        List<PasswordSummary> items,
+        String nextCursor
+) {
+}
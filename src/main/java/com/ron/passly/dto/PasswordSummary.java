@@ -0,0 +1,15 @@
+package com.ron.passly.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One vault entry as listed: read straight from the passwords row, no owner entity involved.
+ */
+public record PasswordSummary(
+        UUID id,
+        String name,
+        LocalDateTime updatedAt,
+        String encryptedValue
+) {
+}
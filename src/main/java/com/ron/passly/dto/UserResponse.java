@@ -0,0 +1,25 @@
+package com.ron.passly.dto;
+
+import com.ron.passly.model.Roles;
+import com.ron.passly.model.User;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Public view of a user. Never serialize the entity itself: it carries the password hash
+ * and lazy associations.
+ */
+public record UserResponse(
+        UUID id,
+        String email,
+        String firstName,
+        String lastName,
+        Set<Roles> roles
+) {
+
+    public static UserResponse from(User user) {
+        return new UserResponse(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                Set.copyOf(user.getRoles()));
+    }
+}
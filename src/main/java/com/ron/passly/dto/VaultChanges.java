@@ -0,0 +1,16 @@
+package com.ron.passly.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Vault changes after a sync cursor: entries created or modified since, and ids deleted since.
+ * Store cursor and pass it back as ?cursor= next time; while hasMore is true, call again at once.
+ */
+public record VaultChanges(
+        List<PasswordSummary> upserted,
+        List<UUID> deleted,
+        String cursor,
+        boolean hasMore
+) {
+}
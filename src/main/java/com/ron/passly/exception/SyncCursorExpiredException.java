@@ -0,0 +1,7 @@
+package com.ron.passly.exception;
+
+public class SyncCursorExpiredException extends RuntimeException {
+    public SyncCursorExpiredException() {
+        super("Sync cursor is older than the tombstone retention window, run a full sync");
+    }
+}
@@ -0,0 +1,7 @@
+package com.ron.passly.exception;
+
+public class VaultVersionMismatchException extends RuntimeException {
+    public VaultVersionMismatchException() {
+        super("Vault has changed since it was read (If-Match precondition failed)");
+    }
+}
@@ -3,32 +3,49 @@ package com.ron.passly.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.PartitionKey;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "passwords")
-@Data
+@Table(name = "passwords", uniqueConstraints = {
+        @UniqueConstraint(name = "ux_passwords_user_name", columnNames = {"user_id", "name"})
+})
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Password {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
-    @ManyToOne
+    // Lazy: the owner is almost always known already, and getUser().getId() reads the FK without a query
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
     private User user;
 
+    // Same column as user, read-only. As the partition key Hibernate adds it to its UPDATE and DELETE,
+    // so they prune to one partition once the table is hash-partitioned (see HashPartitionMigrator)
+    @PartitionKey
+    @Column(name = "user_id", insertable = false, updatable = false)
+    private UUID userId;
+
     @Column(nullable = false)
     private String name;
 
     @Column(nullable = false)
+    @ToString.Exclude
     private String encryptedValue;
 
     @Column(nullable = false, updatable = false)
@@ -36,10 +53,16 @@ public class Password {
 
     private LocalDateTime updatedAt;
 
+    // Change sequence number, stamped by the passwords_stamp_write trigger (V4).
+    // Never written by Hibernate, so the in-memory value is stale after a write.
+    @Column(nullable = false, insertable = false, updatable = false)
+    private long changeSeq;
+
     // Auto timestamp
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        userId = user.getId();
     }
 
     @PreUpdate
@@ -47,4 +70,20 @@ public class Password {
         updatedAt = LocalDateTime.now();
     }
 
+    // Same identity equality as User
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        return getId() != null && getId().equals(((Password) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
 }
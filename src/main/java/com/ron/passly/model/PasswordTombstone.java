@@ -0,0 +1,36 @@
+package com.ron.passly.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A deleted vault entry, written by the passwords_record_delete trigger (V4) so that delta sync
+ * can report deletions. Read-only here; compacted after the retention window.
+ */
+@Entity
+@Table(name = "password_tombstones")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PasswordTombstone {
+
+    @Id
+    private UUID passwordId;
+
+    @Column(nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false)
+    private long changeSeq;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+}
@@ -1,5 +1,39 @@
 package com.ron.passly.model;
 
+import java.util.Collection;
+import java.util.EnumSet;
+
 public enum Roles {
-    USER, OWNER, ADMIN
+    // Bits are persisted in users.roles_mask, never reuse or reorder them
+    USER(1), OWNER(1 << 1), ADMIN(1 << 2);
+
+    private static final Roles[] VALUES = values();
+
+    private final int bit;
+
+    Roles(int bit) {
+        this.bit = bit;
+    }
+
+    public int getBit() {
+        return bit;
+    }
+
+    public static int toMask(Collection<Roles> roles) {
+        int mask = 0;
+        for (Roles role : roles) {
+            mask |= role.bit;
+        }
+        return mask;
+    }
+
+    public static EnumSet<Roles> fromMask(int mask) {
+        EnumSet<Roles> roles = EnumSet.noneOf(Roles.class);
+        for (Roles role : VALUES) {
+            if ((mask & role.bit) != 0) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
 }
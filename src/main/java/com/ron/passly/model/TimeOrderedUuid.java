@@ -0,0 +1,19 @@
+package com.ron.passly.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns a UUIDv7 (RFC 9562) to the annotated id before insert.
+ * Keys grow with time, so inserts append to the right edge of the primary key index
+ * instead of landing on random pages like v4 keys.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
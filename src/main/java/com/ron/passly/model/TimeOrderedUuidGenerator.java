@@ -0,0 +1,69 @@
+package com.ron.passly.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUIDv7 generator: 48-bit Unix millis, version 7, a 12-bit counter, variant bits and 62 random bits.
+ *
+ * The timestamp and counter live in one AtomicLong and advance with a CAS, so ids are
+ * strictly increasing within this JVM without locking (RFC 9562 section 6.2, method 1).
+ * Each new millisecond starts the counter at a random value in its lower half, leaving room
+ * for at least 2048 ids in that millisecond. If the counter overflows, the timestamp
+ * moves ahead by one millisecond rather than going backwards. The same happens if the
+ * wall clock steps back.
+ */
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_62_BITS = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    // (unix millis << 12) | counter of the last id handed out
+    private static final AtomicLong LAST = new AtomicLong();
+
+    public static UUID next() {
+        long now = System.currentTimeMillis();
+        long previous;
+        long current;
+        do {
+            previous = LAST.get();
+            if (now > previous >>> COUNTER_BITS) {
+                current = (now << COUNTER_BITS) | ThreadLocalRandom.current().nextInt(1 << (COUNTER_BITS - 1));
+            } else {
+                current = previous + 1;
+            }
+        } while (!LAST.compareAndSet(previous, current));
+
+        long millis = current >>> COUNTER_BITS;
+        long counter = current & ((1L << COUNTER_BITS) - 1);
+        long msb = (millis << 16) | VERSION_7 | counter;
+        long lsb = VARIANT_RFC | (ThreadLocalRandom.current().nextLong() & RANDOM_62_BITS);
+        return new UUID(msb, lsb);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        // Keep ids assigned up front (e.g. by import or sharding code)
+        return currentValue != null ? currentValue : next();
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
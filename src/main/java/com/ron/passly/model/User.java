@@ -1,28 +1,31 @@
 package com.ron.passly.model;
 
+import com.ron.passly.security.RoleAuthorities;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.Hibernate;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.ArrayList;
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "users")
-@Data
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class User implements UserDetails {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @NotBlank
@@ -36,34 +39,35 @@ public class User implements UserDetails {
     private String email;
 
     @NotBlank
+    @ToString.Exclude
     private String password;
 
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Password> passwords;
+    // Role set stored as a bitmask (see Roles bits), read in the same row as the user
+    @Column(name = "roles_mask", nullable = false)
+    private int rolesMask;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private UserEncryptionKey encryptionKey;
+    // Set while a large vault is purged in the background; the user can no longer sign in
+    private LocalDateTime deletionRequestedAt;
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
-    @Column(name = "role")
-    @Enumerated(EnumType.STRING)
-    private List<Roles> roles = new ArrayList<>();
-
-    public User(String firstName, String lastName, String email, String password, List<String> roles, UserEncryptionKey encryptionKey) {
+    public User(String firstName, String lastName, String email, String password, List<String> roles) {
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
         this.password = password;
-        this.roles = List.of(Roles.USER);
-        this.encryptionKey = encryptionKey;
+        this.rolesMask = Roles.USER.getBit();
+    }
+
+    public EnumSet<Roles> getRoles() {
+        return Roles.fromMask(rolesMask);
+    }
+
+    public void setRoles(Collection<Roles> roles) {
+        this.rolesMask = Roles.toMask(roles);
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return roles.stream()
-                .map(role -> new SimpleGrantedAuthority(role.name()))
-                .collect(Collectors.toList());
+        return RoleAuthorities.forMask(rolesMask);
     }
 
 
@@ -83,4 +87,21 @@ public class User implements UserDetails {
 
     @Override
     public boolean isEnabled() { return true; }
+
+    // Identity equality: id only, proxy-safe, and a hashCode that does not change when the id is assigned
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        return getId() != null && getId().equals(((User) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
 }
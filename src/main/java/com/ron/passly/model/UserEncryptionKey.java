@@ -3,29 +3,37 @@ package com.ron.passly.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "user_encryption_keys")
-@Data
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class UserEncryptionKey {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
-    @OneToOne
+    // Owning side only: an inverse User.encryptionKey would cost a query on every User load
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, unique = true)
+    @ToString.Exclude
     private User user;
 
     @Column(nullable = false, length = 500)
+    @ToString.Exclude
     private String encryptedKey;
 
     @Column(nullable = false, updatable = false)
@@ -46,6 +54,20 @@ public class UserEncryptionKey {
         updatedAt = LocalDateTime.now();
     }
 
+    // Same identity equality as User
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        return getId() != null && getId().equals(((UserEncryptionKey) o).getId());
+    }
 
-
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
 }
@@ -1,13 +1,148 @@
 package com.ron.passly.repository;
 
+import com.ron.passly.dto.PasswordChange;
+import com.ron.passly.dto.PasswordMatch;
+import com.ron.passly.dto.PasswordSummary;
 import com.ron.passly.model.Password;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface PasswordRepository extends ListCrudRepository<Password, UUID> {
+    // The one JpaRepository method in use, so the embedded store implements only what is called
+    void flush();
 
-public interface PasswordRepository extends JpaRepository<Password, UUID> {
     List<Password> findByUserId(UUID userId);
     Optional<Password> findByNameAndUser_Id(String name, UUID userId);
+
+    // Filters on the partition key column directly (no join), so a lookup by id reads one partition
+    Optional<Password> findByIdAndUserId(UUID id, UUID userId);
+
+    // Keyset pagination on (name, id), served by ux_passwords_user_name (V2); p.user.id reads the FK without a join
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordSummary(p.id, p.name, coalesce(p.updatedAt, p.createdAt), p.encryptedValue)
+            FROM Password p
+            WHERE p.user.id = :userId
+            ORDER BY p.name, p.id
+            """)
+    List<PasswordSummary> findSummariesByUserId(@Param("userId") UUID userId, Limit limit);
+
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordSummary(p.id, p.name, coalesce(p.updatedAt, p.createdAt), p.encryptedValue)
+            FROM Password p
+            WHERE p.user.id = :userId
+              AND (p.name, p.id) > (:name, :id)
+            ORDER BY p.name, p.id
+            """)
+    List<PasswordSummary> findSummariesByUserIdAfter(@Param("userId") UUID userId,
+                                                     @Param("name") String name,
+                                                     @Param("id") UUID id,
+                                                     Limit limit);
+
+    @Query("SELECT p.name FROM Password p WHERE p.user.id = :userId AND p.name IN :names")
+    Set<String> findExistingNames(@Param("userId") UUID userId, @Param("names") Collection<String> names);
+
+    // Name search, ranked whole name < prefix < substring (case-insensitive), then (name, id).
+    // contains is the term as an escaped LIKE pattern; lower(name) LIKE is served by idx_passwords_user_name_trgm (V8)
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordMatch(m.id, m.name, m.updatedAt, m.encryptedValue, m.rank)
+            FROM (
+                SELECT p.id AS id, p.name AS name, coalesce(p.updatedAt, p.createdAt) AS updatedAt,
+                       p.encryptedValue AS encryptedValue,
+                       CASE WHEN lower(p.name) = lower(:term) THEN 0
+                            WHEN locate(lower(:term), lower(p.name)) = 1 THEN 1
+                            ELSE 2 END AS rank
+                FROM Password p
+                WHERE p.user.id = :userId
+                  AND lower(p.name) LIKE lower(:contains) ESCAPE '\\'
+            ) m
+            ORDER BY m.rank, m.name, m.id
+            """)
+    List<PasswordMatch> findNameMatches(@Param("userId") UUID userId,
+                                        @Param("term") String term,
+                                        @Param("contains") String contains,
+                                        Limit limit);
+
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordMatch(m.id, m.name, m.updatedAt, m.encryptedValue, m.rank)
+            FROM (
+                SELECT p.id AS id, p.name AS name, coalesce(p.updatedAt, p.createdAt) AS updatedAt,
+                       p.encryptedValue AS encryptedValue,
+                       CASE WHEN lower(p.name) = lower(:term) THEN 0
+                            WHEN locate(lower(:term), lower(p.name)) = 1 THEN 1
+                            ELSE 2 END AS rank
+                FROM Password p
+                WHERE p.user.id = :userId
+                  AND lower(p.name) LIKE lower(:contains) ESCAPE '\\'
+            ) m
+            WHERE m.rank > :rank
+               OR (m.rank = :rank AND (m.name > :name OR (m.name = :name AND m.id > :id)))
+            ORDER BY m.rank, m.name, m.id
+            """)
+    List<PasswordMatch> findNameMatchesAfter(@Param("userId") UUID userId,
+                                             @Param("term") String term,
+                                             @Param("contains") String contains,
+                                             @Param("rank") int rank,
+                                             @Param("name") String name,
+                                             @Param("id") UUID id,
+                                             Limit limit);
+
+    // Forward-only cursor for export: rows arrive from PostgreSQL in fetch-size batches (needs a transaction)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordSummary(p.id, p.name, coalesce(p.updatedAt, p.createdAt), p.encryptedValue)
+            FROM Password p
+            WHERE p.user.id = :userId
+            ORDER BY p.name, p.id
+            """)
+    Stream<PasswordSummary> streamSummariesByUserId(@Param("userId") UUID userId);
+
+    // Delta sync: rows written after a change sequence, served by idx_passwords_user_change_seq (V4)
+    @Query("""
+            SELECT new com.ron.passly.dto.PasswordChange(p.id, p.name, coalesce(p.updatedAt, p.createdAt), p.encryptedValue, p.changeSeq)
+            FROM Password p
+            WHERE p.user.id = :userId
+              AND p.changeSeq > :since
+            ORDER BY p.changeSeq
+            """)
+    List<PasswordChange> findChangesSince(@Param("userId") UUID userId, @Param("since") long since, Limit limit);
+
+    // Vault size capped at limit, so deciding between sync and background deletion never scans a huge vault
+    @Query(value = "SELECT count(*) FROM (SELECT 1 FROM passwords WHERE user_id = :userId LIMIT :limit) v",
+            nativeQuery = true)
+    long countByUserIdUpTo(@Param("userId") UUID userId, @Param("limit") int limit);
+
+    // Deletes in this transaction write no sync tombstones (see V5); only for entries going with their user
+    @Query(value = "SELECT set_config('passly.purge', 'on', true)", nativeQuery = true)
+    String skipTombstonesForTransaction();
+
+    // Set-based: one statement, no entities loaded
+    @Modifying
+    @Query("DELETE FROM Password p WHERE p.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") UUID userId);
+
+    // Bounded batch for background purges; the query space names the one table it touches
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "passwords"))
+    @Query(value = """
+            DELETE FROM passwords
+            WHERE id IN (
+                SELECT id FROM passwords
+                WHERE user_id = :userId
+                LIMIT :batchSize
+            )
+            """, nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") UUID userId, @Param("batchSize") int batchSize);
 }
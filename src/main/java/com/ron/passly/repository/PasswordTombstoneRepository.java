@@ -0,0 +1,35 @@
+package com.ron.passly.repository;
+
+import com.ron.passly.model.PasswordTombstone;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface PasswordTombstoneRepository extends ListCrudRepository<PasswordTombstone, UUID> {
+
+    // Served by idx_password_tombstones_user_seq
+    List<PasswordTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(UUID userId, long changeSeq, Limit limit);
+
+    // Bounded batch so compaction never holds long locks or builds a huge transaction.
+    // The query space names the one table the native DELETE touches; without it Hibernate assumes every table.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "password_tombstones"))
+    @Query(value = """
+            DELETE FROM password_tombstones
+            WHERE password_id IN (
+                SELECT password_id FROM password_tombstones
+                WHERE deleted_at < :cutoff
+                LIMIT :batchSize
+            )
+            """, nativeQuery = true)
+    int deleteDeletedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+}
@@ -1,13 +1,14 @@
 package com.ron.passly.repository;
 
 import com.ron.passly.model.UserEncryptionKey;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.ListCrudRepository;
 
 import java.util.Optional;
 import java.util.UUID;
 
-public interface UserEncryptionKeyRepository extends JpaRepository<UserEncryptionKey, UUID> {
+public interface UserEncryptionKeyRepository extends ListCrudRepository<UserEncryptionKey, UUID> {
 
+    // Always read from the database; see UserEncryptionKey for why it is not cached
     Optional<UserEncryptionKey> findByUserId(UUID userId);
 
 }
@@ -1,19 +1,72 @@
 package com.ron.passly.repository;
 
+import com.ron.passly.dto.AdminUserView;
 import com.ron.passly.dto.AuthUser;
 import com.ron.passly.model.User;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.data.repository.query.Param;
 
-
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface UserRepository extends ListCrudRepository<User, UUID> {
+    // The JpaRepository methods in use, so the embedded store implements only what is called
+    <S extends User> S saveAndFlush(S user);
+
+    User getReferenceById(UUID id);
 
-public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
 
-    @Query("SELECT new com.ron.passly.dto.AuthUser(u.id, u.email, u.password, u.roles, u.firstName, u.lastName) " +
-            "FROM User u WHERE u.email = :email")
+    boolean existsByEmail(String email);
+
+    // One indexed row, no join: roles are read from the roles_mask column
+    @Query("SELECT new com.ron.passly.dto.AuthUser(u.id, u.email, u.password, u.rolesMask, u.firstName, u.lastName) " +
+            "FROM User u WHERE u.email = :email AND u.deletionRequestedAt IS NULL")
     Optional<AuthUser> findAuthDataByEmail(@Param("email") String email);
+
+    // Forward-only scan of the email column, must run inside a transaction
+    @Query("SELECT u.email FROM User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllEmails();
+
+    // Maintained by the passwords triggers (V4); not mapped on User so the entity cache never holds it
+    @Query(value = "SELECT vault_version FROM users WHERE id = :userId", nativeQuery = true)
+    Optional<Long> findVaultVersion(@Param("userId") UUID userId);
+
+    // Same lock the triggers take, so no vault write can commit between this check and ours
+    @Query(value = "SELECT vault_version FROM users WHERE id = :userId FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<Long> lockVaultVersion(@Param("userId") UUID userId);
+
+    // Admin listing, keyset on email. Compared under ucs_basic (code point order) so both the
+    // seek and a prefix range run on idx_users_email_ucs regardless of the database collation.
+    @Query("SELECT new com.ron.passly.dto.AdminUserView(u.id, u.email, u.firstName, u.lastName, u.rolesMask) " +
+            "FROM User u WHERE collate(u.email as ucs_basic) > :after AND u.deletionRequestedAt IS NULL " +
+            "ORDER BY collate(u.email as ucs_basic)")
+    List<AdminUserView> findAdminViewsAfter(@Param("after") String after, Limit limit);
+
+    // Same, restricted to emails in [from, to): the range covering one email prefix
+    @Query("SELECT new com.ron.passly.dto.AdminUserView(u.id, u.email, u.firstName, u.lastName, u.rolesMask) " +
+            "FROM User u WHERE collate(u.email as ucs_basic) > :after AND u.deletionRequestedAt IS NULL " +
+            "AND collate(u.email as ucs_basic) >= :from AND collate(u.email as ucs_basic) < :to " +
+            "ORDER BY collate(u.email as ucs_basic)")
+    List<AdminUserView> findAdminViewsInRangeAfter(@Param("after") String after,
+                                                   @Param("from") String from,
+                                                   @Param("to") String to,
+                                                   Limit limit);
+
+    // Background purges that were interrupted, served by idx_users_deletion_requested (V5)
+    @Query("SELECT u.id FROM User u WHERE u.deletionRequestedAt < :before")
+    List<UUID> findIdsPendingDeletion(@Param("before") LocalDateTime before, Limit limit);
+
+    // Planner statistics instead of COUNT(*): -1 until the table has been analyzed
+    @Query(value = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'users'::regclass", nativeQuery = true)
+    long estimateUserCount();
 }
@@ -0,0 +1,386 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.dto.PasswordChange;
+import com.ron.passly.dto.PasswordMatch;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.model.Password;
+import com.ron.passly.model.TimeOrderedUuidGenerator;
+import com.ron.passly.repository.PasswordRepository;
+import com.ron.passly.store.LogStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Vault entries in the embedded store, indexed per user by (name, id) for listing, by change
+ * sequence for delta sync and by trigrams of the lower-cased name for search, like
+ * ux_passwords_user_name, idx_passwords_user_change_seq and idx_passwords_user_name_trgm.
+ *
+ * Writes do what the V4/V5 triggers do in PostgreSQL: number the change from the vault change
+ * sequence, raise the owner's vault version and leave a tombstone for a delete, unless tombstones
+ * are skipped for the transaction. Everything runs under the store's writer lock, which also
+ * serializes the writers of a vault the way the trigger's user row lock does.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedPasswordRepository extends EmbeddedRepository<Password> implements PasswordRepository {
+
+    private static final String SKIP_TOMBSTONES = "passly.purge";
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private record NameKey(String name, UUID id) {
+        static final Comparator<NameKey> ORDER = (a, b) -> {
+            int byName = compareCodePoints(a.name(), b.name());
+            return byName != 0 ? byName : compareUnsigned(a.id(), b.id());
+        };
+    }
+
+    // One user's entries; the indexes change together under the writer lock
+    private record Vault(NavigableSet<NameKey> byName,
+                         NavigableMap<Long, UUID> byChange,
+                         Map<UUID, Name> names,
+                         Map<String, Set<UUID>> byTrigram) {
+        Vault() {
+            this(new ConcurrentSkipListSet<>(NameKey.ORDER), new ConcurrentSkipListMap<>(),
+                    new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    // An entry's name and its lower-cased form, which search matches against
+    private record Name(String name, String folded) {
+    }
+
+    private record Match(NameKey key, int rank) {
+        static final Comparator<Match> ORDER = Comparator.comparingInt(Match::rank)
+                .thenComparing(Match::key, NameKey.ORDER);
+    }
+
+    private final EmbeddedUserRepository userRepository;
+    private final EmbeddedPasswordTombstoneRepository tombstoneRepository;
+    private final Map<UUID, Vault> vaults = new ConcurrentHashMap<>();
+
+    public EmbeddedPasswordRepository(LogStore store,
+                                      EmbeddedUserRepository userRepository,
+                                      EmbeddedPasswordTombstoneRepository tombstoneRepository) {
+        super(store, StoreRecords.PASSWORDS);
+        this.userRepository = userRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        store.forEach(StoreRecords.PASSWORDS, (id, value) -> index(id, null, value));
+        store.listen(StoreRecords.PASSWORDS, this::index);
+    }
+
+    @Override
+    protected Password decode(UUID id, byte[] value) {
+        return StoreRecords.decodePassword(id, value);
+    }
+
+    @Override
+    protected UUID idOf(Password password) {
+        return password.getId();
+    }
+
+    @Override
+    public <S extends Password> S save(S password) {
+        return store.inTransaction(() -> {
+            if (password.getId() == null) {
+                password.setId(TimeOrderedUuidGenerator.next());
+            }
+            store.lockForWrite();
+            UUID userId = password.getUser() != null ? password.getUser().getId() : password.getUserId();
+            if (!userRepository.existsById(userId)) {
+                throw new DataIntegrityViolationException("No user " + userId + " for vault entry " + password.getId());
+            }
+            Optional<UUID> sameName = findIdByName(userId, password.getName());
+            if (sameName.isPresent() && !sameName.get().equals(password.getId())) {
+                throw new DuplicateKeyException("Vault entry " + password.getName() + " already exists");
+            }
+
+            password.setUserId(userId);
+            if (existsById(password.getId())) {
+                password.setUpdatedAt(LocalDateTime.now());
+            } else {
+                password.setCreatedAt(LocalDateTime.now());
+            }
+            password.setChangeSeq(nextChangeSeq());
+            store.put(StoreRecords.PASSWORDS, password.getId(), StoreRecords.encodePassword(password));
+            userRepository.raiseVaultVersion(userId, password.getChangeSeq());
+            return password;
+        });
+    }
+
+    @Override
+    public void delete(Password password) {
+        deleteEntry(password.getId());
+    }
+
+    @Override
+    public List<Password> findByUserId(UUID userId) {
+        return entries(userId).map(this::findById).flatMap(Optional::stream).toList();
+    }
+
+    @Override
+    public Optional<Password> findByNameAndUser_Id(String name, UUID userId) {
+        return findIdByName(userId, name).flatMap(this::findById);
+    }
+
+    @Override
+    public Optional<Password> findByIdAndUserId(UUID id, UUID userId) {
+        return findById(id).filter(password -> password.getUserId().equals(userId));
+    }
+
+    @Override
+    public List<PasswordSummary> findSummariesByUserId(UUID userId, Limit limit) {
+        return summaries(entries(userId)).limit(max(limit)).toList();
+    }
+
+    @Override
+    public List<PasswordSummary> findSummariesByUserIdAfter(UUID userId, String name, UUID id, Limit limit) {
+        Vault vault = vaults.get(userId);
+        if (vault == null) {
+            return List.of();
+        }
+        Stream<UUID> after = vault.byName().tailSet(new NameKey(name, id), false).stream().map(NameKey::id);
+        return summaries(after).limit(max(limit)).toList();
+    }
+
+    @Override
+    public Set<String> findExistingNames(UUID userId, Collection<String> names) {
+        return names.stream()
+                .filter(name -> findIdByName(userId, name).isPresent())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * A term of three or more characters only checks the entries holding its rarest trigram;
+     * shorter terms check every name of the vault. Either way only lower-cased names held in
+     * memory are compared, and only the returned page is read from the store.
+     */
+    @Override
+    public List<PasswordMatch> findNameMatches(UUID userId, String term, String contains, Limit limit) {
+        return nameMatches(userId, term, null, limit);
+    }
+
+    @Override
+    public List<PasswordMatch> findNameMatchesAfter(UUID userId, String term, String contains,
+                                                    int rank, String name, UUID id, Limit limit) {
+        return nameMatches(userId, term, new Match(new NameKey(name, id), rank), limit);
+    }
+
+    // Lazy over the index, so a large vault is never held in memory
+    @Override
+    public Stream<PasswordSummary> streamSummariesByUserId(UUID userId) {
+        return summaries(entries(userId));
+    }
+
+    @Override
+    public List<PasswordChange> findChangesSince(UUID userId, long since, Limit limit) {
+        Vault vault = vaults.get(userId);
+        if (vault == null) {
+            return List.of();
+        }
+        return vault.byChange().tailMap(since, false).values().stream()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .limit(max(limit))
+                .map(password -> new PasswordChange(password.getId(), password.getName(), lastWritten(password),
+                        password.getEncryptedValue(), password.getChangeSeq()))
+                .toList();
+    }
+
+    @Override
+    public long countByUserIdUpTo(UUID userId, int limit) {
+        Vault vault = vaults.get(userId);
+        return vault == null ? 0 : Math.min(vault.byName().size(), limit);
+    }
+
+    @Override
+    public String skipTombstonesForTransaction() {
+        LogStore.Transaction transaction = store.currentTransaction();
+        if (transaction != null) {
+            transaction.setFlag(SKIP_TOMBSTONES);
+        }
+        return "on";
+    }
+
+    @Override
+    public int deleteAllByUserId(UUID userId) {
+        return deleteBatchByUserId(userId, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int deleteBatchByUserId(UUID userId, int batchSize) {
+        return store.inTransaction(() -> {
+            List<UUID> batch = entries(userId).limit(batchSize).toList();
+            batch.forEach(this::deleteEntry);
+            return batch.size();
+        });
+    }
+
+    private void deleteEntry(UUID id) {
+        store.inTransaction(() -> {
+            store.lockForWrite();
+            byte[] value = store.get(StoreRecords.PASSWORDS, id);
+            if (value == null) {
+                return null;
+            }
+            store.delete(StoreRecords.PASSWORDS, id);
+            UUID userId = StoreRecords.userIdOf(value);
+            // No user: it is being deleted and takes its tombstones with it
+            if (!store.currentTransaction().hasFlag(SKIP_TOMBSTONES) && userRepository.existsById(userId)) {
+                long changeSeq = nextChangeSeq();
+                tombstoneRepository.record(id, userId, changeSeq);
+                userRepository.raiseVaultVersion(userId, changeSeq);
+            }
+            return null;
+        });
+    }
+
+    // The LIKE pattern is for SQL; the term itself is matched here
+    private List<PasswordMatch> nameMatches(UUID userId, String term, Match after, Limit limit) {
+        Vault vault = vaults.get(userId);
+        if (vault == null) {
+            return List.of();
+        }
+        String needle = fold(term);
+        Collection<UUID> candidates = vault.names().keySet();
+        for (String trigram : trigrams(needle)) {
+            Set<UUID> holders = vault.byTrigram().getOrDefault(trigram, Set.of());
+            if (holders.size() < candidates.size()) {
+                candidates = holders;
+            }
+        }
+
+        // Only the best page is kept, in a heap whose head is the worst of it, so broad terms skip the full sort
+        int max = max(limit);
+        PriorityQueue<Match> best = new PriorityQueue<>(Match.ORDER.reversed());
+        for (UUID id : candidates) {
+            Match match = match(vault, id, needle);
+            if (match == null || after != null && Match.ORDER.compare(match, after) <= 0) {
+                continue;
+            }
+            if (best.size() < max) {
+                best.add(match);
+            } else if (Match.ORDER.compare(match, best.peek()) < 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+
+        return best.stream()
+                .sorted(Match.ORDER)
+                .map(match -> findById(match.key().id()).map(password -> new PasswordMatch(password.getId(),
+                        password.getName(), lastWritten(password), password.getEncryptedValue(), match.rank())))
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    // Null unless the name contains the needle
+    private static Match match(Vault vault, UUID id, String needle) {
+        Name name = vault.names().get(id);
+        if (name == null || !name.folded().contains(needle)) {
+            return null;
+        }
+        int rank = name.folded().equals(needle) ? PasswordMatch.EXACT
+                : name.folded().startsWith(needle) ? PasswordMatch.PREFIX : PasswordMatch.SUBSTRING;
+        return new Match(new NameKey(name.name(), id), rank);
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // Every run of three characters; none for shorter text
+    private static Set<String> trigrams(String folded) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            trigrams.add(folded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // vault_change_seq, persisted with the changes it numbers; under the writer lock
+    private long nextChangeSeq() {
+        long next = StoreRecords.decodeLong(store.get(StoreRecords.META, StoreRecords.VAULT_CHANGE_SEQ)) + 1;
+        store.put(StoreRecords.META, StoreRecords.VAULT_CHANGE_SEQ, StoreRecords.encodeLong(next));
+        return next;
+    }
+
+    private Optional<UUID> findIdByName(UUID userId, String name) {
+        Vault vault = vaults.get(userId);
+        if (vault == null) {
+            return Optional.empty();
+        }
+        NameKey first = vault.byName().ceiling(new NameKey(name, MIN_ID));
+        return first != null && first.name().equals(name) ? Optional.of(first.id()) : Optional.empty();
+    }
+
+    // Entry ids in (name, id) order
+    private Stream<UUID> entries(UUID userId) {
+        Vault vault = vaults.get(userId);
+        return vault == null ? Stream.empty() : vault.byName().stream().map(NameKey::id);
+    }
+
+    private Stream<PasswordSummary> summaries(Stream<UUID> ids) {
+        return ids.map(this::findById)
+                .flatMap(Optional::stream)
+                .map(password -> new PasswordSummary(password.getId(), password.getName(), lastWritten(password),
+                        password.getEncryptedValue()));
+    }
+
+    private static LocalDateTime lastWritten(Password password) {
+        return password.getUpdatedAt() != null ? password.getUpdatedAt() : password.getCreatedAt();
+    }
+
+    // Runs under the store's writer lock
+    private void index(UUID id, byte[] before, byte[] after) {
+        if (before != null) {
+            Password old = decode(id, before);
+            vaults.computeIfPresent(old.getUserId(), (userId, vault) -> {
+                vault.byName().remove(new NameKey(old.getName(), id));
+                vault.byChange().remove(old.getChangeSeq());
+                Name name = vault.names().remove(id);
+                if (name != null) {
+                    for (String trigram : trigrams(name.folded())) {
+                        vault.byTrigram().computeIfPresent(trigram, (key, holders) -> {
+                            holders.remove(id);
+                            return holders.isEmpty() ? null : holders;
+                        });
+                    }
+                }
+                return vault.byName().isEmpty() ? null : vault;
+            });
+        }
+        if (after != null) {
+            Password current = decode(id, after);
+            Vault vault = vaults.computeIfAbsent(current.getUserId(), userId -> new Vault());
+            vault.byName().add(new NameKey(current.getName(), id));
+            vault.byChange().put(current.getChangeSeq(), id);
+            Name name = new Name(current.getName(), fold(current.getName()));
+            vault.names().put(id, name);
+            for (String trigram : trigrams(name.folded())) {
+                vault.byTrigram().computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.model.PasswordTombstone;
+import com.ron.passly.repository.PasswordTombstoneRepository;
+import com.ron.passly.store.LogStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sync tombstones in the embedded store, written by EmbeddedPasswordRepository where the SQL schema
+ * has its delete trigger. Indexed per user by change sequence, like idx_password_tombstones_user_seq.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedPasswordTombstoneRepository extends EmbeddedRepository<PasswordTombstone>
+        implements PasswordTombstoneRepository {
+
+    private final Map<UUID, NavigableMap<Long, UUID>> byUser = new ConcurrentHashMap<>();
+
+    public EmbeddedPasswordTombstoneRepository(LogStore store) {
+        super(store, StoreRecords.PASSWORD_TOMBSTONES);
+        store.forEach(StoreRecords.PASSWORD_TOMBSTONES, (id, value) -> index(id, null, value));
+        store.listen(StoreRecords.PASSWORD_TOMBSTONES, this::index);
+    }
+
+    @Override
+    protected PasswordTombstone decode(UUID id, byte[] value) {
+        return StoreRecords.decodeTombstone(id, value);
+    }
+
+    @Override
+    protected UUID idOf(PasswordTombstone tombstone) {
+        return tombstone.getPasswordId();
+    }
+
+    @Override
+    public <S extends PasswordTombstone> S save(S tombstone) {
+        store.put(StoreRecords.PASSWORD_TOMBSTONES, tombstone.getPasswordId(), StoreRecords.encodeTombstone(tombstone));
+        return tombstone;
+    }
+
+    @Override
+    public void delete(PasswordTombstone tombstone) {
+        store.delete(StoreRecords.PASSWORD_TOMBSTONES, tombstone.getPasswordId());
+    }
+
+    @Override
+    public List<PasswordTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(UUID userId, long changeSeq,
+                                                                                       Limit limit) {
+        NavigableMap<Long, UUID> tombstones = byUser.get(userId);
+        if (tombstones == null) {
+            return List.of();
+        }
+        List<PasswordTombstone> page = new ArrayList<>();
+        for (UUID passwordId : tombstones.tailMap(changeSeq, false).values()) {
+            if (page.size() == max(limit)) {
+                break;
+            }
+            findById(passwordId).ifPresent(page::add);
+        }
+        return page;
+    }
+
+    // A full scan, but compaction runs once an hour and stops at the batch size
+    @Override
+    public int deleteDeletedBefore(LocalDateTime cutoff, int batchSize) {
+        return store.inTransaction(() -> {
+            List<UUID> expired = new ArrayList<>();
+            for (UUID passwordId : store.keys(StoreRecords.PASSWORD_TOMBSTONES)) {
+                if (expired.size() == batchSize) {
+                    break;
+                }
+                findById(passwordId)
+                        .filter(tombstone -> tombstone.getDeletedAt().isBefore(cutoff))
+                        .ifPresent(tombstone -> expired.add(passwordId));
+            }
+            expired.forEach(passwordId -> store.delete(StoreRecords.PASSWORD_TOMBSTONES, passwordId));
+            return expired.size();
+        });
+    }
+
+    void record(UUID passwordId, UUID userId, long changeSeq) {
+        save(new PasswordTombstone(passwordId, userId, changeSeq, LocalDateTime.now()));
+    }
+
+    // The ON DELETE CASCADE of fk_password_tombstones_user
+    void deleteAllByUserId(UUID userId) {
+        NavigableMap<Long, UUID> tombstones = byUser.get(userId);
+        if (tombstones != null) {
+            List.copyOf(tombstones.values())
+                    .forEach(passwordId -> store.delete(StoreRecords.PASSWORD_TOMBSTONES, passwordId));
+        }
+    }
+
+    // Runs under the store's writer lock
+    private void index(UUID passwordId, byte[] before, byte[] after) {
+        if (before != null) {
+            PasswordTombstone old = decode(passwordId, before);
+            byUser.computeIfPresent(old.getUserId(), (userId, tombstones) -> {
+                tombstones.remove(old.getChangeSeq());
+                return tombstones.isEmpty() ? null : tombstones;
+            });
+        }
+        if (after != null) {
+            PasswordTombstone tombstone = decode(passwordId, after);
+            byUser.computeIfAbsent(tombstone.getUserId(), userId -> new ConcurrentSkipListMap<>())
+                    .put(tombstone.getChangeSeq(), passwordId);
+        }
+    }
+}
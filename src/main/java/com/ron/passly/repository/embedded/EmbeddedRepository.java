@@ -0,0 +1,136 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.store.LogStore;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.ListCrudRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The generic ListCrudRepository surface over one LogStore table, plus the few JpaRepository methods
+ * the repository interfaces declare; subclasses supply the record layout, save and delete (where the
+ * constraints and triggers of the SQL schema are reproduced).
+ * There is no persistence context: every read returns a fresh entity, changes need an explicit save,
+ * and flush is a no-op.
+ */
+abstract class EmbeddedRepository<T> implements ListCrudRepository<T, UUID> {
+
+    protected final LogStore store;
+    private final int table;
+
+    protected EmbeddedRepository(LogStore store, int table) {
+        this.store = store;
+        this.table = table;
+    }
+
+    protected abstract T decode(UUID id, byte[] value);
+
+    protected abstract UUID idOf(T entity);
+
+    @Override
+    public Optional<T> findById(UUID id) {
+        byte[] value = store.get(table, id);
+        return value == null ? Optional.empty() : Optional.of(decode(id, value));
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        return store.contains(table, id);
+    }
+
+    @Override
+    public long count() {
+        return store.size(table);
+    }
+
+    @Override
+    public List<T> findAll() {
+        List<T> all = new ArrayList<>(store.size(table));
+        store.forEach(table, (id, value) -> all.add(decode(id, value)));
+        return all;
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<UUID> ids) {
+        List<T> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        return store.inTransaction(() -> {
+            List<S> saved = new ArrayList<>();
+            entities.forEach(entity -> saved.add(save(entity)));
+            return saved;
+        });
+    }
+
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    public void flush() {
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        findById(id).ifPresent(this::delete);
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends UUID> ids) {
+        store.inTransaction(() -> {
+            ids.forEach(this::deleteById);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        store.inTransaction(() -> {
+            entities.forEach(this::delete);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAllById(List.copyOf(store.keys(table)));
+    }
+
+    // A loaded entity rather than a proxy: a point read costs about what creating a proxy does
+    public T getReferenceById(UUID id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("No entity with id " + id));
+    }
+
+    // Limit.unlimited() as a count
+    protected static int max(Limit limit) {
+        return limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+    }
+
+    // PostgreSQL's ucs_basic and uuid orders: code points, and unsigned bytes
+    protected static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    protected static int compareUnsigned(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,89 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.model.TimeOrderedUuidGenerator;
+import com.ron.passly.model.UserEncryptionKey;
+import com.ron.passly.repository.UserEncryptionKeyRepository;
+import com.ron.passly.store.LogStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data keys in the embedded store, indexed by owner (user_id is unique, one key per user).
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedUserEncryptionKeyRepository extends EmbeddedRepository<UserEncryptionKey>
+        implements UserEncryptionKeyRepository {
+
+    private final Map<UUID, UUID> byUser = new ConcurrentHashMap<>();
+
+    public EmbeddedUserEncryptionKeyRepository(LogStore store) {
+        super(store, StoreRecords.USER_ENCRYPTION_KEYS);
+        store.forEach(StoreRecords.USER_ENCRYPTION_KEYS, (id, value) -> index(id, null, value));
+        store.listen(StoreRecords.USER_ENCRYPTION_KEYS, this::index);
+    }
+
+    @Override
+    protected UserEncryptionKey decode(UUID id, byte[] value) {
+        return StoreRecords.decodeKey(id, value);
+    }
+
+    @Override
+    protected UUID idOf(UserEncryptionKey key) {
+        return key.getId();
+    }
+
+    @Override
+    public <S extends UserEncryptionKey> S save(S key) {
+        return store.inTransaction(() -> {
+            if (key.getId() == null) {
+                key.setId(TimeOrderedUuidGenerator.next());
+            }
+            store.lockForWrite();
+            UUID userId = key.getUser().getId();
+            if (!store.contains(StoreRecords.USERS, userId)) {
+                throw new DataIntegrityViolationException("No user " + userId + " for encryption key " + key.getId());
+            }
+            UUID existing = byUser.get(userId);
+            if (existing != null && !existing.equals(key.getId())) {
+                throw new DuplicateKeyException("User " + userId + " already has an encryption key");
+            }
+            if (existing == null) {
+                key.setCreatedAt(LocalDateTime.now());
+            } else {
+                key.setUpdatedAt(LocalDateTime.now());
+            }
+            store.put(StoreRecords.USER_ENCRYPTION_KEYS, key.getId(), StoreRecords.encodeKey(userId, key));
+            return key;
+        });
+    }
+
+    @Override
+    public void delete(UserEncryptionKey key) {
+        store.delete(StoreRecords.USER_ENCRYPTION_KEYS, key.getId());
+    }
+
+    @Override
+    public Optional<UserEncryptionKey> findByUserId(UUID userId) {
+        UUID id = byUser.get(userId);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    // Runs under the store's writer lock
+    private void index(UUID id, byte[] before, byte[] after) {
+        if (before != null) {
+            byUser.remove(StoreRecords.userIdOf(before), id);
+        }
+        if (after != null) {
+            byUser.put(StoreRecords.userIdOf(after), id);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.dto.AdminUserView;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.TimeOrderedUuidGenerator;
+import com.ron.passly.model.User;
+import com.ron.passly.repository.UserRepository;
+import com.ron.passly.store.LogStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Users in the embedded store. Emails are indexed in a hash map for sign-in and in code point
+ * order for the admin listing, the counterparts of the unique constraint and idx_users_email_ucs.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedUserRepository extends EmbeddedRepository<User> implements UserRepository {
+
+    private final EmbeddedPasswordTombstoneRepository tombstoneRepository;
+    private final Map<String, UUID> byEmail = new ConcurrentHashMap<>();
+    private final NavigableMap<String, UUID> byEmailOrdered = new ConcurrentSkipListMap<>(EmbeddedRepository::compareCodePoints);
+    private final Map<UUID, LocalDateTime> pendingDeletion = new ConcurrentHashMap<>();
+
+    public EmbeddedUserRepository(LogStore store, EmbeddedPasswordTombstoneRepository tombstoneRepository) {
+        super(store, StoreRecords.USERS);
+        this.tombstoneRepository = tombstoneRepository;
+        store.forEach(StoreRecords.USERS, (id, value) -> index(id, null, value));
+        store.listen(StoreRecords.USERS, this::index);
+    }
+
+    @Override
+    protected User decode(UUID id, byte[] value) {
+        return StoreRecords.decodeUser(id, value);
+    }
+
+    @Override
+    protected UUID idOf(User user) {
+        return user.getId();
+    }
+
+    // The email check runs under the writer lock, so two registrations cannot both pass it
+    @Override
+    public <S extends User> S save(S user) {
+        return store.inTransaction(() -> {
+            if (user.getId() == null) {
+                user.setId(TimeOrderedUuidGenerator.next());
+            }
+            store.lockForWrite();
+            UUID owner = byEmail.get(user.getEmail());
+            if (owner != null && !owner.equals(user.getId())) {
+                throw new DuplicateKeyException("Email already registered: " + user.getEmail());
+            }
+            store.put(StoreRecords.USERS, user.getId(), StoreRecords.encodeUser(user));
+            return user;
+        });
+    }
+
+    // Keys and vault entries are deleted by the caller first, as the foreign keys require
+    @Override
+    public void delete(User user) {
+        store.inTransaction(() -> {
+            store.delete(StoreRecords.USERS, user.getId());
+            store.delete(StoreRecords.VAULT_VERSIONS, user.getId());
+            tombstoneRepository.deleteAllByUserId(user.getId());
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        UUID id = byEmail.get(email);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return byEmail.containsKey(email);
+    }
+
+    @Override
+    public Optional<AuthUser> findAuthDataByEmail(String email) {
+        return findByEmail(email)
+                .filter(user -> user.getDeletionRequestedAt() == null)
+                .map(user -> new AuthUser(user.getId(), user.getEmail(), user.getPassword(), user.getRolesMask(),
+                        user.getFirstName(), user.getLastName()));
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return byEmailOrdered.keySet().stream();
+    }
+
+    @Override
+    public Optional<Long> findVaultVersion(UUID userId) {
+        if (!existsById(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(StoreRecords.decodeLong(store.get(StoreRecords.VAULT_VERSIONS, userId)));
+    }
+
+    // The writer lock stands in for the row lock: no vault write can commit until this transaction ends
+    @Override
+    public Optional<Long> lockVaultVersion(UUID userId) {
+        store.lockForWrite();
+        return findVaultVersion(userId);
+    }
+
+    @Override
+    public List<AdminUserView> findAdminViewsAfter(String after, Limit limit) {
+        return adminViews(byEmailOrdered.tailMap(after, false), limit);
+    }
+
+    @Override
+    public List<AdminUserView> findAdminViewsInRangeAfter(String after, String from, String to, Limit limit) {
+        if (compareCodePoints(after, to) >= 0) {
+            return List.of();
+        }
+        return adminViews(compareCodePoints(after, from) < 0
+                ? byEmailOrdered.subMap(from, true, to, false)
+                : byEmailOrdered.subMap(after, false, to, false), limit);
+    }
+
+    @Override
+    public List<UUID> findIdsPendingDeletion(LocalDateTime before, Limit limit) {
+        return pendingDeletion.entrySet().stream()
+                .filter(pending -> pending.getValue().isBefore(before))
+                .map(Map.Entry::getKey)
+                .limit(max(limit))
+                .toList();
+    }
+
+    // Exact, and as cheap as the planner estimate it stands in for
+    @Override
+    public long estimateUserCount() {
+        return count();
+    }
+
+    // users.vault_version follows the highest change sequence of the vault
+    void raiseVaultVersion(UUID userId, long changeSeq) {
+        if (StoreRecords.decodeLong(store.get(StoreRecords.VAULT_VERSIONS, userId)) < changeSeq) {
+            store.put(StoreRecords.VAULT_VERSIONS, userId, StoreRecords.encodeLong(changeSeq));
+        }
+    }
+
+    private List<AdminUserView> adminViews(NavigableMap<String, UUID> emails, Limit limit) {
+        return emails.values().stream()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .filter(user -> user.getDeletionRequestedAt() == null)
+                .limit(max(limit))
+                .map(user -> new AdminUserView(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                        user.getRolesMask()))
+                .toList();
+    }
+
+    // Runs under the store's writer lock; the new email is indexed before the old one goes
+    private void index(UUID id, byte[] before, byte[] after) {
+        User old = before == null ? null : decode(id, before);
+        User current = after == null ? null : decode(id, after);
+        if (current != null) {
+            byEmail.put(current.getEmail(), id);
+            byEmailOrdered.put(current.getEmail(), id);
+            if (current.getDeletionRequestedAt() != null) {
+                pendingDeletion.put(id, current.getDeletionRequestedAt());
+            } else {
+                pendingDeletion.remove(id);
+            }
+        } else {
+            pendingDeletion.remove(id);
+        }
+        if (old != null && (current == null || !old.getEmail().equals(current.getEmail()))) {
+            byEmail.remove(old.getEmail(), id);
+            byEmailOrdered.remove(old.getEmail(), id);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.model.Password;
+import com.ron.passly.model.PasswordTombstone;
+import com.ron.passly.model.User;
+import com.ron.passly.model.UserEncryptionKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Tables of the embedded store and the binary layout of their records.
+ * Every record starts with a layout version, so a later layout can still read the old one;
+ * the key (the entity id) is stored by the log and not repeated here.
+ * Associations are stored as the owner's id and read back as an id-only User, like a lazy proxy.
+ */
+final class StoreRecords {
+
+    static final int USERS = 0;
+    static final int USER_ENCRYPTION_KEYS = 1;
+    static final int PASSWORDS = 2;
+    static final int PASSWORD_TOMBSTONES = 3;
+    // users.vault_version, kept apart so vault writes do not rewrite the user record
+    static final int VAULT_VERSIONS = 4;
+    // Counters, keyed by the ids below
+    static final int META = 5;
+
+    static final UUID VAULT_CHANGE_SEQ = new UUID(0, 1);
+
+    private static final int VERSION = 1;
+
+    private StoreRecords() {
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    // v1: first name, last name, email, password hash, role bitmask, deletion requested at
+    static byte[] encodeUser(User user) {
+        return encode(out -> {
+            writeString(out, user.getFirstName());
+            writeString(out, user.getLastName());
+            writeString(out, user.getEmail());
+            writeString(out, user.getPassword());
+            out.writeInt(user.getRolesMask());
+            writeTime(out, user.getDeletionRequestedAt());
+        });
+    }
+
+    static User decodeUser(UUID id, byte[] value) {
+        return decode(value, in -> User.builder()
+                .id(id)
+                .firstName(readString(in))
+                .lastName(readString(in))
+                .email(readString(in))
+                .password(readString(in))
+                .rolesMask(in.readInt())
+                .deletionRequestedAt(readTime(in))
+                .build());
+    }
+
+    // v1: user id, name, encrypted value, created at, updated at, change sequence
+    static byte[] encodePassword(Password password) {
+        return encode(out -> {
+            writeUuid(out, password.getUserId());
+            writeString(out, password.getName());
+            writeString(out, password.getEncryptedValue());
+            writeTime(out, password.getCreatedAt());
+            writeTime(out, password.getUpdatedAt());
+            out.writeLong(password.getChangeSeq());
+        });
+    }
+
+    static Password decodePassword(UUID id, byte[] value) {
+        return decode(value, in -> {
+            UUID userId = readUuid(in);
+            return Password.builder()
+                    .id(id)
+                    .user(reference(userId))
+                    .userId(userId)
+                    .name(readString(in))
+                    .encryptedValue(readString(in))
+                    .createdAt(readTime(in))
+                    .updatedAt(readTime(in))
+                    .changeSeq(in.readLong())
+                    .build();
+        });
+    }
+
+    // v1: user id, encrypted key, salt, created at, updated at
+    static byte[] encodeKey(UUID userId, UserEncryptionKey key) {
+        return encode(out -> {
+            writeUuid(out, userId);
+            writeString(out, key.getEncryptedKey());
+            writeString(out, key.getSalt());
+            writeTime(out, key.getCreatedAt());
+            writeTime(out, key.getUpdatedAt());
+        });
+    }
+
+    static UserEncryptionKey decodeKey(UUID id, byte[] value) {
+        return decode(value, in -> UserEncryptionKey.builder()
+                .id(id)
+                .user(reference(readUuid(in)))
+                .encryptedKey(readString(in))
+                .salt(readString(in))
+                .createdAt(readTime(in))
+                .updatedAt(readTime(in))
+                .build());
+    }
+
+    // v1: user id, change sequence, deleted at
+    static byte[] encodeTombstone(PasswordTombstone tombstone) {
+        return encode(out -> {
+            writeUuid(out, tombstone.getUserId());
+            out.writeLong(tombstone.getChangeSeq());
+            writeTime(out, tombstone.getDeletedAt());
+        });
+    }
+
+    static PasswordTombstone decodeTombstone(UUID passwordId, byte[] value) {
+        return decode(value, in -> new PasswordTombstone(passwordId, readUuid(in), in.readLong(), readTime(in)));
+    }
+
+    // Only the fields the secondary indexes need, without decoding the whole record
+    static UUID userIdOf(byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        return new UUID(buffer.getLong(1), buffer.getLong(9));
+    }
+
+    static byte[] encodeLong(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    static long decodeLong(byte[] value) {
+        return value == null ? 0 : ByteBuffer.wrap(value).getLong();
+    }
+
+    static User reference(UUID userId) {
+        return User.builder().id(userId).build();
+    }
+
+    private static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(byte[] value, Reader<T> reader) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unknown record layout " + version);
+            }
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Not null: the user id is read at a fixed offset by userIdOf
+    private static void writeUuid(DataOutput out, UUID value) throws IOException {
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+}
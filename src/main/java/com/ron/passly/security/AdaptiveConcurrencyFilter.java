@@ -0,0 +1,205 @@
+package com.ron.passly.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limiter and load shedder for the whole API.
+ * Runs ahead of Spring Security so shed requests cost no JWT parsing or DB lookups.
+ * While the global limit has room every request is admitted; once it is reached,
+ * only endpoint classes still below their guaranteed share of the limit get through
+ * and everything else is rejected immediately with 503.
+ * The limit, in-flight counts and shed requests are published as concurrency.* metrics.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdaptiveConcurrencyFilter extends OncePerRequestFilter {
+
+    private static final byte[] OVERLOADED_BODY = """
+            {"error":"Service Unavailable","message":"Server is overloaded. Please retry shortly.","retryAfter":1}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    enum EndpointClass { LOGIN, VAULT_READ, ADMIN, DEFAULT }
+
+    private final boolean enabled;
+    private final GradientConcurrencyLimit limit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final Map<EndpointClass, Partition> partitions = new EnumMap<>(EndpointClass.class);
+
+    public AdaptiveConcurrencyFilter(
+            @Value("${concurrency.limit.enabled:true}") boolean enabled,
+            @Value("${concurrency.limit.initial:20}") int initialLimit,
+            @Value("${concurrency.limit.min:4}") int minLimit,
+            @Value("${concurrency.limit.max:400}") int maxLimit,
+            @Value("${concurrency.limit.window-size:20}") int windowSize,
+            @Value("${concurrency.limit.share.login:0.3}") double loginShare,
+            @Value("${concurrency.limit.share.vault-read:0.3}") double vaultReadShare,
+            @Value("${concurrency.limit.share.admin:0.1}") double adminShare,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limit = new GradientConcurrencyLimit(initialLimit, minLimit, maxLimit, windowSize);
+
+        partitions.put(EndpointClass.LOGIN, new Partition(EndpointClass.LOGIN, loginShare, meterRegistry));
+        partitions.put(EndpointClass.VAULT_READ, new Partition(EndpointClass.VAULT_READ, vaultReadShare, meterRegistry));
+        partitions.put(EndpointClass.ADMIN, new Partition(EndpointClass.ADMIN, adminShare, meterRegistry));
+        // Everything else only uses capacity the guaranteed classes leave free
+        partitions.put(EndpointClass.DEFAULT, new Partition(EndpointClass.DEFAULT, 0.0, meterRegistry));
+
+        Gauge.builder("concurrency.limit", limit, GradientConcurrencyLimit::getLimit).register(meterRegistry);
+        Gauge.builder("concurrency.inflight", inflight, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        // Health probes must keep answering while we shed load
+        return !enabled || path.equals("/health") || path.equals("/api/health") || path.startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        Partition partition = partitions.get(classify(request));
+
+        if (!tryAcquire(partition)) {
+            partition.shed.increment();
+            rejectOverloaded(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int inflightAtStart = inflight.get();
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= 500;
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Streaming responses: latency depends on the client, so release without sampling
+                request.getAsyncContext().addListener(new ReleaseOnComplete(partition));
+            } else {
+                release(partition);
+                limit.onSample(System.nanoTime() - start, inflightAtStart, dropped);
+            }
+        }
+    }
+
+    private EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+
+        if ("POST".equals(method) && path.equals("/api/auth/login")) {
+            return EndpointClass.LOGIN;
+        }
+        if ("GET".equals(method) && path.startsWith("/api/password")) {
+            return EndpointClass.VAULT_READ;
+        }
+        if (path.startsWith("/api/users")) {
+            return EndpointClass.ADMIN;
+        }
+        return EndpointClass.DEFAULT;
+    }
+
+    // Each admission claims its slot with a compare-and-set, so concurrent requests cannot both
+    // take the last one: below the limit on the global count, above it on the class's share
+    private boolean tryAcquire(Partition partition) {
+        int currentLimit = limit.getLimit();
+        int guaranteed = (int) Math.ceil(currentLimit * partition.share);
+
+        while (true) {
+            int current = inflight.get();
+            if (current < currentLimit) {
+                if (inflight.compareAndSet(current, current + 1)) {
+                    partition.busy.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+            int busy = partition.busy.get();
+            if (busy >= guaranteed) {
+                return false;
+            }
+            if (partition.busy.compareAndSet(busy, busy + 1)) {
+                inflight.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private void release(Partition partition) {
+        partition.busy.decrementAndGet();
+        inflight.decrementAndGet();
+    }
+
+    private void rejectOverloaded(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        response.setContentType("application/json");
+        response.setContentLength(OVERLOADED_BODY.length);
+        response.getOutputStream().write(OVERLOADED_BODY);
+    }
+
+    private static final class Partition {
+        private final double share;
+        private final AtomicInteger busy = new AtomicInteger();
+        private final Counter shed;
+
+        private Partition(EndpointClass endpointClass, double share, MeterRegistry meterRegistry) {
+            this.share = share;
+            String tag = endpointClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("concurrency.busy", busy, AtomicInteger::get).tag("class", tag).register(meterRegistry);
+            this.shed = Counter.builder("concurrency.shed").tag("class", tag).register(meterRegistry);
+        }
+    }
+
+    private final class ReleaseOnComplete implements AsyncListener {
+        private final Partition partition;
+        private boolean released = false;
+
+        private ReleaseOnComplete(Partition partition) {
+            this.partition = partition;
+        }
+
+        private synchronized void releaseOnce() {
+            if (!released) {
+                released = true;
+                release(partition);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) { releaseOnce(); }
+
+        @Override
+        public void onTimeout(AsyncEvent event) { releaseOnce(); }
+
+        @Override
+        public void onError(AsyncEvent event) { releaseOnce(); }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ron.passly.security;
+
+/**
+ * Gradient-style adaptive concurrency limit (in the spirit of TCP Vegas / Netflix Gradient2).
+ * Compares a short-term average RTT with a slowly moving long-term baseline: when latency
+ * rises above the baseline the limit shrinks proportionally, otherwise it grows by a small
+ * queue allowance. The limit therefore tracks what the database and CPU can sustain.
+ */
+public class GradientConcurrencyLimit {
+
+    private static final double TOLERANCE = 1.5;      // accept up to 50% latency growth before backing off
+    private static final double SMOOTHING = 0.2;      // weight of a new estimate
+    private static final double DROP_BACKOFF = 0.9;   // multiplicative decrease on failures
+    private static final int LONG_WINDOW = 600;       // samples in the long-term baseline EMA
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    // Current short window
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInflight;
+    private boolean windowDropped;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int windowSize) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = Math.max(1, windowSize);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = this.limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public synchronized void onSample(long rttNanos, int inflight, boolean dropped) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInflight = Math.max(windowMaxInflight, inflight);
+        windowDropped |= dropped;
+
+        if (windowSamples >= windowSize) {
+            update((double) windowRttSum / windowSamples, windowMaxInflight, windowDropped);
+            windowRttSum = 0;
+            windowSamples = 0;
+            windowMaxInflight = 0;
+            windowDropped = false;
+        }
+    }
+
+    private void update(double shortRtt, int maxInflight, boolean dropped) {
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos += (shortRtt - longRttNanos) * (2.0 / (LONG_WINDOW + 1));
+        }
+
+        // After a sustained slowdown clears, let the baseline fall faster so the limit can recover
+        if (longRttNanos / shortRtt > 2.0) {
+            longRttNanos *= 0.95;
+        }
+
+        double newLimit;
+        if (dropped) {
+            newLimit = estimatedLimit * DROP_BACKOFF;
+        } else if (maxInflight < estimatedLimit / 2) {
+            // Application limited, latency says nothing about capacity
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRtt));
+            double queueSize = Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * gradient + queueSize;
+            newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        }
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,251 @@
+package com.ron.passly.security;
+
+import com.ron.passly.service.IdempotencyService;
+import com.ron.passly.service.IdempotencyService.IdempotencyRecord;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes expensive writes safe to retry.
+ * The first request with a given Idempotency-Key runs normally and its response is stored;
+ * concurrent duplicates wait for it and later duplicates get the stored response replayed,
+ * so no Argon2/PBKDF2 work is repeated. Reusing a key with a different body is rejected.
+ * Runs after Spring Security so keys are scoped to the authenticated user when there is one.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+    // Client errors a retry of the same body would get again; 408 and 429 are transient, like 5xx
+    private static final Set<Integer> FINAL_CLIENT_ERRORS = Set.of(400, 409, 422);
+
+    private static final byte[] INVALID_KEY_BODY = """
+            {"error":"Bad Request","message":"Idempotency-Key must be 1-255 characters"}"""
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOO_LARGE_BODY = """
+            {"error":"Payload Too Large","message":"Request body too large for an idempotent request"}"""
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] KEY_REUSED_BODY = """
+            {"error":"Unprocessable Entity","message":"Idempotency-Key was already used with a different request"}"""
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] IN_PROGRESS_BODY = """
+            {"error":"Conflict","message":"A request with this Idempotency-Key is still being processed"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final IdempotencyService idempotencyService;
+    private final List<String> paths;
+    private final int maxBodyBytes;
+    private final Duration waitTimeout;
+    private final SecretKeySpec fingerprintKey;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public IdempotencyFilter(IdempotencyService idempotencyService,
+                             @Value("${idempotency.paths:/api/auth/register}") List<String> paths,
+                             @Value("${idempotency.max-body-bytes:65536}") int maxBodyBytes,
+                             @Value("${idempotency.wait-timeout:15s}") Duration waitTimeout,
+                             @Value("${idempotency.fingerprint-secret:${jwt.secret}}") String fingerprintSecret) {
+        this.idempotencyService = idempotencyService;
+        this.paths = paths;
+        this.maxBodyBytes = maxBodyBytes;
+        this.waitTimeout = waitTimeout;
+        // Keyed fingerprint: bodies contain passwords, a plain hash in Redis would be guessable offline
+        this.fingerprintKey = new SecretKeySpec(fingerprintSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY_HEADER) == null || !WRITE_METHODS.contains(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern.trim(), path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, INVALID_KEY_BODY);
+            return;
+        }
+
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            writeError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, TOO_LARGE_BODY);
+            return;
+        }
+
+        String storeKey = scope() + ":" + request.getMethod() + ":" + request.getRequestURI() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request, body);
+
+        try {
+            while (true) {
+                IdempotencyRecord existing = idempotencyService.claim(storeKey, fingerprint);
+
+                if (existing == null) {
+                    execute(new CachedBodyRequest(request, body), response, filterChain, storeKey, fingerprint);
+                    return;
+                }
+                if (!existing.fingerprint().equals(fingerprint)) {
+                    writeError(response, 422, KEY_REUSED_BODY);
+                    return;
+                }
+                if (!existing.isCompleted()) {
+                    existing = idempotencyService.awaitCompletion(storeKey, waitTimeout);
+                }
+                if (existing != null) {
+                    replay(existing, response);
+                    return;
+                }
+                // The first request failed and released the key, try to run it ourselves
+            }
+        } catch (TimeoutException e) {
+            writeError(response, HttpServletResponse.SC_CONFLICT, IN_PROGRESS_BODY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(response, HttpServletResponse.SC_CONFLICT, IN_PROGRESS_BODY);
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                         String storeKey, String fingerprint) throws ServletException, IOException {
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, cachingResponse);
+
+            // Only final answers are stored, anything else releases the key so the client can retry for real
+            if (!request.isAsyncStarted() && isFinal(cachingResponse.getStatus())) {
+                idempotencyService.complete(storeKey, new IdempotencyRecord(
+                        IdempotencyService.State.COMPLETED,
+                        fingerprint,
+                        cachingResponse.getStatus(),
+                        cachingResponse.getContentType(),
+                        cachingResponse.getContentAsByteArray()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                idempotencyService.release(storeKey);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isFinal(int status) {
+        return (status >= 200 && status < 300) || FINAL_CLIENT_ERRORS.contains(status);
+    }
+
+    private void replay(IdempotencyRecord record, HttpServletResponse response) throws IOException {
+        response.setStatus(record.status());
+        if (record.contentType() != null) {
+            response.setContentType(record.contentType());
+        }
+        response.setHeader("Idempotent-Replayed", "true");
+
+        byte[] body = record.body() != null ? record.body() : new byte[0];
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private String scope() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+
+    private String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fingerprintKey);
+            mac.update((request.getMethod() + " " + request.getRequestURI() + "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to fingerprint request", e);
+        }
+    }
+
+    private void writeError(HttpServletResponse response, int status, byte[] body) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // Request whose body was already read for fingerprinting
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() { return input.available() == 0; }
+
+                @Override
+                public boolean isReady() { return true; }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() { return input.read(); }
+
+                @Override
+                public int read(byte[] b, int off, int len) { return input.read(b, off, len); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), java.nio.charset.Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() { return body.length; }
+
+        @Override
+        public long getContentLengthLong() { return body.length; }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ron.passly.security;
 
-import com.ron.passly.model.User;
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.dto.AuthUser;
 import com.ron.passly.service.UserService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,6 +9,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -23,6 +25,9 @@ public class JwtFilterChain extends OncePerRequestFilter {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ShardRouter shardRouter;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
 
@@ -44,12 +49,13 @@ public class JwtFilterChain extends OncePerRequestFilter {
             String email = jwtService.extractEmail(token);
 
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                User user = userService.findByEmail(email).orElse(null);
+                // Same single-row projection as login, no entity or role join per request
+                AuthUser authUser = userService.findAuthDataByEmail(email).orElse(null);
 
-                if (user != null && jwtService.isTokenValid(token, user.getUsername())) {
+                if (authUser != null && jwtService.isTokenValid(token, authUser.email())) {
 
                     UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                            new UsernamePasswordAuthenticationToken(authUser, null, authUser.getAuthorities());
                     SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
             }
@@ -57,6 +63,14 @@ public class JwtFilterChain extends OncePerRequestFilter {
 
         }
 
+        // The rest of the request works on the caller's own rows, so it runs on their shard
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthUser authUser) {
+            try (ShardRouter.Binding ignored = shardRouter.bindUser(authUser.id())) {
+                filterChain.doFilter(request, response);
+            }
+            return;
+        }
         filterChain.doFilter(request, response);
     }
 }
\ No newline at end of file
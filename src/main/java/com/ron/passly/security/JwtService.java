@@ -58,12 +58,12 @@ public class JwtService {
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
         Map<String,Object> extraClaims = new HashMap<>();
-        extraClaims.put("id", authUser.getId());
-        extraClaims.put("roles", authUser.getRoles());
+        extraClaims.put("id", authUser.id());
+        extraClaims.put("roles", authUser.roles());
 
         return Jwts.builder()
                 .setClaims(extraClaims)
-                .setSubject(authUser.getEmail())
+                .setSubject(authUser.email())
                 .setIssuer("Passly-API")
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
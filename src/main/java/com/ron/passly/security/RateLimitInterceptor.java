@@ -7,10 +7,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
 
+    private static final byte[] RATE_LIMITED_BODY = """
+            {"error":"Too Many Requests","message":"Rate limit exceeded. Please try again later.","retryAfter":60}"""
+            .getBytes(StandardCharsets.UTF_8);
+
     private final RateLimitingService rateLimitingService;
 
     public RateLimitInterceptor(RateLimitingService rateLimitingService) {
@@ -35,16 +40,8 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     private void handleRateLimitExceeded(HttpServletResponse response, HttpServletRequest request) throws IOException {
         response.setStatus(429);
         response.setContentType("application/json");
-
-        String jsonResponse = """
-    {
-        "error": "Too Many Requests",
-        "message": "Rate limit exceeded. Please try again later.",
-        "retryAfter": 60
-    }
-    """;
-
-        response.getWriter().write(jsonResponse);
+        response.setContentLength(RATE_LIMITED_BODY.length);
+        response.getOutputStream().write(RATE_LIMITED_BODY);
     }
 
     private String getClientId(HttpServletRequest request) {
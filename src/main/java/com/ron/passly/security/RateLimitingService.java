@@ -263,24 +263,6 @@ public class RateLimitingService {
         riskAssessmentService.recordSuccessfulAttempt(clientId);
     }
 
-    // Get service statistics
-    public Map<String, Object> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("redisAvailable", redisAvailable);
-        stats.put("memoryEntriesCount", requestCounts.size());
-
-        if (redisAvailable) {
-            try {
-                Set<String> keys = redisTemplate.keys(RATE_LIMIT_PREFIX + "*");
-                stats.put("redisKeysCount", keys != null ? keys.size() : 0);
-            } catch (Exception e) {
-                stats.put("redisKeysCount", "Error retrieving count");
-            }
-        }
-
-        return stats;
-    }
-
     // Scheduled cleanup every 5 minutes
     @Scheduled(fixedRate = 300000)
     public void cleanupOldEntries() {
@@ -0,0 +1,41 @@
+package com.ron.passly.security;
+
+import com.ron.passly.model.Roles;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Pre-built, shared authority lists for every possible role combination.
+ * Authentication hands out these immutable instances instead of allocating
+ * new SimpleGrantedAuthority objects on every request.
+ */
+public final class RoleAuthorities {
+
+    private static final List<List<GrantedAuthority>> BY_MASK;
+
+    static {
+        int combinations = 1 << Roles.values().length;
+        List<List<GrantedAuthority>> byMask = new ArrayList<>(combinations);
+        for (int mask = 0; mask < combinations; mask++) {
+            byMask.add(Roles.fromMask(mask).stream()
+                    .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.name()))
+                    .toList());
+        }
+        BY_MASK = List.copyOf(byMask);
+    }
+
+    private RoleAuthorities() {
+    }
+
+    public static List<GrantedAuthority> forMask(int rolesMask) {
+        return BY_MASK.get(rolesMask & (BY_MASK.size() - 1));
+    }
+
+    public static List<GrantedAuthority> forRoles(Collection<Roles> roles) {
+        return forMask(Roles.toMask(roles));
+    }
+}
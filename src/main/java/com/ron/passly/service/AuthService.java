@@ -1,13 +1,14 @@
 package com.ron.passly.service;
 
+import com.ron.passly.datasource.ShardRouter;
 import com.ron.passly.dto.AuthUser;
+import com.ron.passly.dto.CreateUserRequest;
 import com.ron.passly.dto.LoginRequest;
 import com.ron.passly.dto.LoginResponse;
 import com.ron.passly.dto.RegisterRequest;
 import com.ron.passly.exception.InvalidCredentialsException;
 import com.ron.passly.model.Roles;
 import com.ron.passly.model.User;
-import com.ron.passly.model.UserEncryptionKey;
 import com.ron.passly.security.JwtService;
 import com.ron.passly.security.RiskAssessmentService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -32,36 +33,46 @@ public class AuthService  {
 
     @Transactional
     public LoginResponse register(RegisterRequest registerRequest) {
+        User savedUser = createUser(registerRequest.getFirstName(), registerRequest.getLastName(),
+                registerRequest.getEmail(), registerRequest.getPassword());
+
+        //Create Token
+        String token = jwtService.generateToken(savedUser);
+
+        return buildLoginResponse(token, savedUser.getId(), savedUser.getFirstName(), savedUser.getLastName(), savedUser.getEmail());
+    }
+
+    // Same hashing, default role and data key as a registration, without signing the new user in
+    @Transactional
+    public User createUser(CreateUserRequest request) {
+        return createUser(request.firstName(), request.lastName(), request.email(), request.password());
+    }
+
+    private User createUser(String firstName, String lastName, String email, String password) {
 
         //Convert DTO to Entity
         User user = new User();
-        user.setFirstName(registerRequest.getFirstName());
-        user.setLastName(registerRequest.getLastName());
-        user.setEmail(registerRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(password));
 
         // Default role
         user.setRoles(List.of(Roles.USER));
 
         String dek = encryptionService.generateRandomKey();
         String salt = encryptionService.generateSalt();
-        String kek = encryptionService.deriveKeyFromPassword(registerRequest.getPassword(), salt);
-        String encryptedDek = encryptionService.encrypt(dek, kek);
-
-        UserEncryptionKey userEncryptionKey = UserEncryptionKey.builder()
-                .encryptedKey(encryptedDek)
-                .salt(salt)
-                .build();
+        String kek = encryptionService.deriveKeyFromPassword(password, salt);
+        String encryptedDek = encryptionService.wrapUserKey(dek, kek);
 
-        user.setEncryptionKey(userEncryptionKey);
+        // User and key rows go to the same shard, bound before this transaction's first query
+        try (ShardRouter.Binding ignored = userService.placeNewUser(user)) {
+            //Call UserService
+            User savedUser = userService.createUser(user);
 
-        //Call UserService
-        User savedUser = userService.createUser(user);
-
-        //Create Token
-        String token = jwtService.generateToken(savedUser);
-
-        return buildLoginResponse(token, savedUser.getId(), savedUser.getFirstName(), savedUser.getLastName(), savedUser.getEmail());
+            encryptionService.storeUserKey(savedUser, encryptedDek, salt);
+            return savedUser;
+        }
     }
 
     public LoginResponse login(LoginRequest request, HttpServletRequest httpRequest) {
@@ -88,7 +99,7 @@ public class AuthService  {
             }
 
             // Verify password
-            if (!passwordEncoder.matches(request.getPassword(), authUser.getPassword())) {
+            if (!passwordEncoder.matches(request.getPassword(), authUser.password())) {
                 riskAssessmentService.recordFailedAttempt(clientId);
 
                 log.warn("Login failed: Wrong password for user: {} from IP: {}",
@@ -101,7 +112,7 @@ public class AuthService  {
 
             String token = jwtService.generateToken(authUser);
 
-            return buildLoginResponse(token, authUser.getId(), authUser.getFirstName(), authUser.getLastName(), authUser.getEmail());
+            return buildLoginResponse(token, authUser.id(), authUser.firstName(), authUser.lastName(), authUser.email());
 
         } catch (InvalidCredentialsException ex) {
 
@@ -1,61 +1,108 @@
 package com.ron.passly.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ron.passly.model.User;
+import com.ron.passly.model.UserEncryptionKey;
 import com.ron.passly.repository.UserEncryptionKeyRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.Base64;
-
+import java.util.UUID;
+
+/**
+ * AES-CBC with a random IV prepended to the ciphertext, and PBKDF2 for key derivation.
+ *
+ * Cipher and SecretKeyFactory are not thread-safe, so each thread keeps its own and re-inits it
+ * per call instead of looking the provider up again. IVs, salts and keys come from one shared
+ * DRBG, which is thread-safe and seeded once rather than per call. Data keys are parsed into
+ * SecretKeys once and cached briefly by user id, so deleting a user's key also drops it from this
+ * node at once and from the others within the ttl; keys derived from master passwords are never cached.
+ */
 @Service
-@RequiredArgsConstructor
 public class EncryptionService {
 
-    private final UserEncryptionKeyRepository userEncryptionKeyRepository;
-
     private static final String ALGORITHM = "AES";
     private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String KDF = "PBKDF2WithHmacSHA1";
     private static final int KEY_LENGTH = 256;
     private static final int IV_LENGTH = 16;
+    private static final int BLOCK_SIZE = 16;
     private static final int SALT_LENGTH = 32;
     private static final int PBKDF2_ITERATIONS = 100000;
 
-    public String generateRandomKey() {
-        try {
-            KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
-
-            keyGen.init(KEY_LENGTH);
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> instance(Cipher::getInstance, TRANSFORMATION));
+    private static final ThreadLocal<SecretKeyFactory> KEY_FACTORIES = ThreadLocal.withInitial(() -> instance(SecretKeyFactory::getInstance, KDF));
 
-            SecretKey secretKey = keyGen.generateKey();
+    private final UserEncryptionKeyRepository userEncryptionKeyRepository;
+    private final SecureRandom random;
+    private final Cache<UUID, DataKey> dataKeys;
 
-            return Base64.getEncoder().encodeToString(secretKey.getEncoded());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate random key: " + e.getMessage());
-        }
+    // The encoded form is kept to notice a caller passing a different key for the same user
+    private record DataKey(String encoded, SecretKey key) {
+    }
 
+    public EncryptionService(UserEncryptionKeyRepository userEncryptionKeyRepository,
+                             @Value("${encryption.key-cache.maximum-size:10000}") long keyCacheSize,
+                             @Value("${encryption.key-cache.time-to-live:5m}") Duration keyCacheTtl) {
+        this.userEncryptionKeyRepository = userEncryptionKeyRepository;
+        this.random = instance(algorithm -> SecureRandom.getInstance(algorithm,
+                DrbgParameters.instantiation(KEY_LENGTH, DrbgParameters.Capability.RESEED_ONLY, null)), "DRBG");
+        this.dataKeys = Caffeine.newBuilder()
+                .maximumSize(keyCacheSize)
+                .expireAfterWrite(keyCacheTtl)
+                .build();
     }
 
-    public String generateSalt() {
+    public UserEncryptionKey storeUserKey(User user, String encryptedKey, String salt) {
+        return userEncryptionKeyRepository.save(UserEncryptionKey.builder()
+                .user(user)
+                .encryptedKey(encryptedKey)
+                .salt(salt)
+                .build());
+    }
 
-        try {
-            SecureRandom random = new SecureRandom();
+    public void deleteUserKey(UUID userId) {
+        userEncryptionKeyRepository.findByUserId(userId).ifPresent(userEncryptionKeyRepository::delete);
+        dataKeys.invalidate(userId);
+    }
 
-            byte[] salt = new byte[SALT_LENGTH];
+    // Decrypts the user's data key with the key derived from their master password
+    public String unwrapUserKey(UUID userId, String masterPassword) {
+        UserEncryptionKey key = userEncryptionKeyRepository.findByUserId(userId)
+                .orElseThrow(() -> new IllegalStateException("No encryption key for user " + userId));
+        String kek = deriveKeyFromPassword(masterPassword, key.getSalt());
+        return decrypt(key.getEncryptedKey(), secretKey(kek));
+    }
 
-            random.nextBytes(salt);
+    // Encrypts a data key with a key derived from a master password, which is not cached
+    public String wrapUserKey(String dataKey, String kek) {
+        return encrypt(dataKey, secretKey(kek));
+    }
 
-            return Base64.getEncoder().encodeToString(salt);
+    public String generateRandomKey() {
+        byte[] key = new byte[KEY_LENGTH / 8];
+        random.nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
 
-        }  catch (Exception e) {
-            throw new RuntimeException("Failed to generate salt: " + e.getMessage());
-        }
+    public String generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return Base64.getEncoder().encodeToString(salt);
     }
 
     public String deriveKeyFromPassword(String password, String salt) {
@@ -71,9 +118,8 @@ public class EncryptionService {
                     KEY_LENGTH
             );
 
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-
-            SecretKey derivedKey = keyFactory.generateSecret(spec);
+            SecretKey derivedKey = KEY_FACTORIES.get().generateSecret(spec);
+            spec.clearPassword();
 
             return  Base64.getEncoder().encodeToString(derivedKey.getEncoded());
 
@@ -82,60 +128,107 @@ public class EncryptionService {
         }
     }
 
-    public String encrypt(String plainText, String key) {
-        try {
+    // key is the user's data key, as returned by unwrapUserKey
+    public String encrypt(UUID userId, String plainText, String key) {
+        return encrypt(plainText, dataKey(userId, key));
+    }
 
-            byte[] keyByes = Base64.getDecoder().decode(key);
-            SecretKey secretKey = new SecretKeySpec(keyByes, ALGORITHM);
+    public String decrypt(UUID userId, String encryptedText, String key) {
+        return decrypt(encryptedText, dataKey(userId, key));
+    }
+
+    /**
+     * Writes IV + ciphertext of plainText's remaining bytes into out and returns the number of
+     * bytes written. out needs room for encryptedSize(plainText.remaining()).
+     */
+    public int encrypt(UUID userId, ByteBuffer plainText, ByteBuffer out, String key) {
+        return encrypt(plainText, out, dataKey(userId, key));
+    }
 
+    /**
+     * Reads IV + ciphertext from encrypted's remaining bytes and writes the plain text into out,
+     * which needs room for encrypted.remaining() - 16 bytes. Returns the number of bytes written.
+     */
+    public int decrypt(UUID userId, ByteBuffer encrypted, ByteBuffer out, String key) {
+        try {
             byte[] iv = new byte[IV_LENGTH];
-            new  SecureRandom().nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            encrypted.get(iv);
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.DECRYPT_MODE, dataKey(userId, key), new IvParameterSpec(iv));
+            return cipher.doFinal(encrypted, out);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt text: " + e.getMessage());
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
+    // PKCS5 always adds padding, so a whole block when the plain text already fills its last one
+    public static int encryptedSize(int plainLength) {
+        return IV_LENGTH + (plainLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
 
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes());
+    private String encrypt(String plainText, SecretKey key) {
+        byte[] plain = plainText.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(encryptedSize(plain.length));
+        encrypt(ByteBuffer.wrap(plain), out, key);
+        return Base64.getEncoder().encodeToString(out.array());
+    }
 
-            byte[] encryptedWithIv = new byte[IV_LENGTH + encryptedBytes.length];
-            System.arraycopy(iv, 0, encryptedWithIv, 0, IV_LENGTH);
-            System.arraycopy(encryptedBytes, 0, encryptedWithIv, IV_LENGTH, encryptedBytes.length);
+    private int encrypt(ByteBuffer plainText, ByteBuffer out, SecretKey key) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            out.put(iv);
 
-            return Base64.getEncoder().encodeToString(encryptedWithIv);
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+            return IV_LENGTH + cipher.doFinal(plainText, out);
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to encrypt text: " + e.getMessage());
         }
-
     }
 
-    public String decrypt(String encryptedText, String key) {
-
+    // The IV and ciphertext are read as slices of the decoded array rather than copied out of it
+    private String decrypt(String encryptedText, SecretKey key) {
         try {
             byte[] encryptedWithIv = Base64.getDecoder().decode(encryptedText);
 
-            byte[] iv = new byte[IV_LENGTH];
-            System.arraycopy(encryptedWithIv, 0, iv, 0, IV_LENGTH);
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(encryptedWithIv, 0, IV_LENGTH));
+            byte[] decryptedBytes = cipher.doFinal(encryptedWithIv, IV_LENGTH, encryptedWithIv.length - IV_LENGTH);
 
-            byte[] encryptedBytes = new byte[encryptedWithIv.length - IV_LENGTH];
-            System.arraycopy(encryptedWithIv, IV_LENGTH, encryptedBytes, 0, encryptedBytes.length);
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
 
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            SecretKey secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt text: " + e.getMessage());
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
+    private SecretKey dataKey(UUID userId, String key) {
+        DataKey cached = dataKeys.getIfPresent(userId);
+        if (cached != null && cached.encoded().equals(key)) {
+            return cached.key();
+        }
+        DataKey parsed = new DataKey(key, secretKey(key));
+        dataKeys.put(userId, parsed);
+        return parsed.key();
+    }
 
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+    private static SecretKey secretKey(String key) {
+        return new SecretKeySpec(Base64.getDecoder().decode(key), ALGORITHM);
+    }
 
-            return new String(decryptedBytes);
+    private interface Lookup<T> {
+        T get(String algorithm) throws GeneralSecurityException;
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to decrypt text: " + e.getMessage());
+    // Every algorithm here is one the JDK must provide, so a missing one is a broken runtime
+    private static <T> T instance(Lookup<T> lookup, String algorithm) {
+        try {
+            return lookup.get(algorithm);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
         }
     }
 
 }
-
-
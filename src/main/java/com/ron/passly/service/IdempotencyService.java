@@ -0,0 +1,164 @@
+package com.ron.passly.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stores the outcome of requests carrying an Idempotency-Key.
+ * Redis is the shared store; a local map stands in when Redis is unavailable.
+ * A key is first claimed as IN_PROGRESS with a short lease, then replaced by the
+ * COMPLETED response for the full TTL, or released so a retry can run again.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final RedisTemplate<String, Object> binaryRedisTemplate;
+    private final Duration ttl;
+    private final Duration lease;
+
+    // Fallback storage when Redis is unavailable
+    private final Map<String, LocalEntry> localStore = new ConcurrentHashMap<>();
+    // Requests being processed on this node, so local duplicates wait without polling
+    private final Map<String, CompletableFuture<IdempotencyRecord>> localInflight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(RedisTemplate<String, Object> binaryRedisTemplate,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.lease:30s}") Duration lease) {
+        this.binaryRedisTemplate = binaryRedisTemplate;
+        this.ttl = ttl;
+        this.lease = lease;
+    }
+
+    public enum State { IN_PROGRESS, COMPLETED }
+
+    public record IdempotencyRecord(State state, String fingerprint, int status, String contentType, byte[] body) {
+
+        public static IdempotencyRecord inProgress(String fingerprint) {
+            return new IdempotencyRecord(State.IN_PROGRESS, fingerprint, 0, null, null);
+        }
+
+        public boolean isCompleted() {
+            return state == State.COMPLETED;
+        }
+    }
+
+    /**
+     * Claims the key for this request.
+     * Returns null when the caller now owns the key, otherwise the record already stored.
+     */
+    public IdempotencyRecord claim(String key, String fingerprint) {
+        IdempotencyRecord claim = IdempotencyRecord.inProgress(fingerprint);
+        IdempotencyRecord existing;
+        try {
+            Boolean acquired = binaryRedisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + key, claim, lease);
+            existing = Boolean.TRUE.equals(acquired) ? null : read(key);
+        } catch (Exception e) {
+            log.debug("Redis unavailable for idempotency, using local store: {}", e.getMessage());
+            existing = claimLocally(key, claim);
+        }
+
+        if (existing == null) {
+            localInflight.put(key, new CompletableFuture<>());
+        }
+        return existing;
+    }
+
+    public void complete(String key, IdempotencyRecord record) {
+        try {
+            binaryRedisTemplate.opsForValue().set(KEY_PREFIX + key, record, ttl);
+        } catch (Exception e) {
+            localStore.put(key, new LocalEntry(record, System.currentTimeMillis() + ttl.toMillis()));
+        }
+        finishLocal(key, record);
+    }
+
+    // Drop the claim so a retry can execute the request again
+    public void release(String key) {
+        try {
+            binaryRedisTemplate.delete(KEY_PREFIX + key);
+        } catch (Exception e) {
+            localStore.remove(key);
+        }
+        finishLocal(key, null);
+    }
+
+    /**
+     * Waits for a concurrent duplicate to finish.
+     * Returns the completed record, or null if the owner released the key.
+     */
+    public IdempotencyRecord awaitCompletion(String key, Duration timeout) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        CompletableFuture<IdempotencyRecord> local = localInflight.get(key);
+        if (local != null) {
+            try {
+                return local.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        // Owned by another node: poll the shared store
+        while (System.nanoTime() < deadline) {
+            IdempotencyRecord current = readAny(key);
+            if (current == null || current.isCompleted()) {
+                return current;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        throw new TimeoutException("Idempotent request still in progress: " + key);
+    }
+
+    private void finishLocal(String key, IdempotencyRecord record) {
+        CompletableFuture<IdempotencyRecord> future = localInflight.remove(key);
+        if (future != null) {
+            future.complete(record);
+        }
+    }
+
+    private IdempotencyRecord readAny(String key) {
+        try {
+            return read(key);
+        } catch (Exception e) {
+            LocalEntry entry = localStore.get(key);
+            return entry != null && !entry.isExpired() ? entry.record() : null;
+        }
+    }
+
+    private IdempotencyRecord read(String key) {
+        return (IdempotencyRecord) binaryRedisTemplate.opsForValue().get(KEY_PREFIX + key);
+    }
+
+    private IdempotencyRecord claimLocally(String key, IdempotencyRecord claim) {
+        long now = System.currentTimeMillis();
+        if (localStore.size() > 10_000) {
+            localStore.values().removeIf(LocalEntry::isExpired);
+        }
+
+        LocalEntry fresh = new LocalEntry(claim, now + lease.toMillis());
+        LocalEntry winner = localStore.compute(key, (k, current) ->
+                current == null || current.isExpired() ? fresh : current);
+        return winner == fresh ? null : winner.record();
+    }
+
+    private record LocalEntry(IdempotencyRecord record, long expiresAt) {
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
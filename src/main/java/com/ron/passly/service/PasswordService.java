@@ -1,11 +1,21 @@
 package com.ron.passly.service;
 
+import com.ron.passly.dto.PasswordMatch;
+import com.ron.passly.dto.PasswordPage;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.exception.InvalidCursorException;
+import com.ron.passly.exception.InvalidSearchException;
 import com.ron.passly.model.Password;
 import com.ron.passly.model.User;
 import com.ron.passly.repository.PasswordRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,28 +23,150 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class PasswordService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_SEARCH_LENGTH = 255;
+
     private final PasswordRepository passwordRepository;
+    private final VaultVersionService vaultVersionService;
 
     public Password createPassword(User user, Password password) {
         password.setUser(user);
-        return passwordRepository.save(password);
+        Password saved = passwordRepository.save(password);
+        vaultVersionService.evict(user.getId());
+        return saved;
     }
 
+    @Transactional(readOnly = true)
     public List<Password> findPasswordsByUserId(UUID userId) {
         return passwordRepository.findByUserId(userId);
     }
 
+    /**
+     * One page of the caller's vault ordered by (name, id).
+     * Reads one extra row to know whether another page exists, so the cost per page stays
+     * constant however large the vault is.
+     */
+    @Transactional(readOnly = true)
+    public PasswordPage listPasswords(UUID userId, String cursor, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Limit limit = Limit.of(size + 1);
+
+        List<PasswordSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = passwordRepository.findSummariesByUserId(userId, limit);
+        } else {
+            PasswordSummary after = decodeCursor(cursor);
+            rows = passwordRepository.findSummariesByUserIdAfter(userId, after.name(), after.id(), limit);
+        }
+
+        if (rows.size() <= size) {
+            return new PasswordPage(rows, null);
+        }
+        List<PasswordSummary> page = rows.subList(0, size);
+        return new PasswordPage(List.copyOf(page), encodeCursor(page.get(size - 1)));
+    }
+
+    /**
+     * One page of the caller's entries whose name contains term, case-insensitively: whole-name
+     * matches first, then prefixes, then other substrings, each by (name, id). Same extra-row paging
+     * as the listing; the cursor carries the rank, so pages never shift between tiers.
+     */
+    @Transactional(readOnly = true)
+    public PasswordPage searchPasswords(UUID userId, String term, String cursor, int pageSize) {
+        if (term == null || term.isBlank() || term.length() > MAX_SEARCH_LENGTH) {
+            throw new InvalidSearchException("Search term must be 1 to " + MAX_SEARCH_LENGTH + " characters");
+        }
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Limit limit = Limit.of(size + 1);
+        String contains = "%" + escapeLike(term) + "%";
+
+        List<PasswordMatch> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = passwordRepository.findNameMatches(userId, term, contains, limit);
+        } else {
+            PasswordMatch after = decodeSearchCursor(cursor);
+            rows = passwordRepository.findNameMatchesAfter(userId, term, contains,
+                    after.rank(), after.name(), after.id(), limit);
+        }
+
+        List<PasswordSummary> items = rows.stream().limit(size).map(PasswordMatch::toSummary).toList();
+        String nextCursor = rows.size() > size ? encodeSearchCursor(rows.get(size - 1)) : null;
+        return new PasswordPage(items, nextCursor);
+    }
+
     public Password updatePassword(UUID userId, String name, String newEncryptedValue) {
         Password password = passwordRepository.findByNameAndUser_Id(name, userId)
                 .orElseThrow(() -> new RuntimeException("Password not found for " + name));
 
         password.setEncryptedValue(newEncryptedValue);
 
-        return passwordRepository.save(password);
+        Password saved = passwordRepository.save(password);
+        vaultVersionService.evict(userId);
+        return saved;
+    }
+
+    @Transactional
+    public void deletePassword(UUID userId, UUID id) {
+        passwordRepository.findByIdAndUserId(id, userId).ifPresent(password -> {
+            passwordRepository.delete(password);
+            vaultVersionService.evict(userId);
+        });
+    }
+
+    // The term as literal LIKE text, escaped with the backslash the search queries declare
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Search cursor = base64url(rank byte + 16-byte id + UTF-8 name) of the last row returned
+    private static String encodeSearchCursor(PasswordMatch last) {
+        byte[] name = last.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 16 + name.length)
+                .put((byte) last.rank())
+                .putLong(last.id().getMostSignificantBits())
+                .putLong(last.id().getLeastSignificantBits())
+                .put(name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private static PasswordMatch decodeSearchCursor(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.remaining() < 17) {
+                throw new InvalidCursorException();
+            }
+            int rank = buffer.get();
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            String name = StandardCharsets.UTF_8.decode(buffer).toString();
+            return new PasswordMatch(id, name, null, null, rank);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    // Cursor = base64url(16-byte id + UTF-8 name) of the last row returned; opaque to clients
+    private static String encodeCursor(PasswordSummary last) {
+        byte[] name = last.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(16 + name.length)
+                .putLong(last.id().getMostSignificantBits())
+                .putLong(last.id().getLeastSignificantBits())
+                .put(name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
     }
 
-    public void deletePassword(UUID id) {
-        passwordRepository.deleteById(id);
+    private static PasswordSummary decodeCursor(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.remaining() < 16) {
+                throw new InvalidCursorException();
+            }
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            String name = StandardCharsets.UTF_8.decode(buffer).toString();
+            return new PasswordSummary(id, name, null, null);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
     }
 
 }
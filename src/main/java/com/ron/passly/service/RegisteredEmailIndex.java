@@ -0,0 +1,97 @@
+package com.ron.passly.service;
+
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Per-node index of registered emails used to skip the users lookup on registration.
+ * It is only an optimization: the unique constraint on users.email stays the source of truth,
+ * so a stale or cold index can cost an extra query but never lets a duplicate through.
+ */
+@Slf4j
+@Component
+public class RegisteredEmailIndex {
+
+    private final UserRepository userRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final double falsePositiveRate;
+    private final long expectedInsertions;
+
+    private volatile EmailBloomFilter filter;
+    private volatile EmailBloomFilter warming;
+    private volatile boolean ready = false;
+
+    public RegisteredEmailIndex(UserRepository userRepository,
+                                ShardRouter shardRouter,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${users.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                                @Value("${users.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new EmailBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    // Stream users.email of every shard once at startup; inserts that race with the scan land in both filters
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            long started = System.currentTimeMillis();
+            long existing = shardRouter.onEachShard(shard -> userRepository.count()).stream()
+                    .mapToLong(Long::longValue).sum();
+            EmailBloomFilter next = new EmailBloomFilter(Math.max(expectedInsertions, existing * 2), falsePositiveRate);
+            warming = next;
+
+            AtomicLong loaded = new AtomicLong();
+            shardRouter.forEachShard(shard -> readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<String> emails = userRepository.streamAllEmails()) {
+                    emails.forEach(email -> {
+                        next.put(email);
+                        loaded.incrementAndGet();
+                    });
+                }
+            }));
+
+            filter = next;
+            warming = null;
+            ready = true;
+            log.info("Registered email index warmed with {} emails in {} ms ({} bits, {} hashes)",
+                    loaded.get(), System.currentTimeMillis() - started, next.bitCount(), next.hashFunctions());
+        } catch (Exception e) {
+            warming = null;
+            log.warn("Registered email index unavailable, registration falls back to lookups: {}", e.getMessage());
+        }
+    }
+
+    // False means the email is definitely not registered as far as this node knows
+    public boolean mightBeRegistered(String email) {
+        return !ready || filter.mightContain(email);
+    }
+
+    // Read warming before filter so a concurrent swap cannot drop the email from both
+    public void add(String email) {
+        EmailBloomFilter pending = warming;
+        if (pending != null) {
+            pending.put(email);
+        }
+        filter.put(email);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
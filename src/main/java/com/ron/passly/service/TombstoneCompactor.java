@@ -0,0 +1,86 @@
+package com.ron.passly.service;
+
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.repository.PasswordTombstoneRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes sync tombstones older than the retention window, in small batches.
+ * Runs on every node; the batches are idempotent, so overlapping runs only repeat work.
+ * Clients whose cursor is older than the window get 410 and re-download (see VaultSyncService).
+ */
+@Slf4j
+@Component
+public class TombstoneCompactor {
+
+    private final PasswordTombstoneRepository tombstoneRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transaction;
+    private final Duration retention;
+    private final Duration interval;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tombstone-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TombstoneCompactor(PasswordTombstoneRepository tombstoneRepository,
+                              ShardRouter shardRouter,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${vault.sync.tombstone-retention:30d}") Duration retention,
+                              @Value("${vault.sync.compaction-interval:1h}") Duration interval,
+                              @Value("${vault.sync.compaction-batch-size:5000}") int batchSize) {
+        this.tombstoneRepository = tombstoneRepository;
+        this.shardRouter = shardRouter;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::compact, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void compact() {
+        shardRouter.forEachShard(this::compactShard);
+    }
+
+    private void compactShard(int shard) {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+            long removed = 0;
+            int batch;
+            do {
+                batch = transaction.execute(status -> tombstoneRepository.deleteDeletedBefore(cutoff, batchSize));
+                removed += batch;
+            } while (batch == batchSize && !Thread.currentThread().isInterrupted());
+
+            if (removed > 0) {
+                log.info("Compacted {} sync tombstones older than {} on shard {}", removed, cutoff, shard);
+            }
+        } catch (Exception e) {
+            log.warn("Tombstone compaction failed on shard {}, retrying next run: {}", shard, e.getMessage());
+        }
+    }
+}
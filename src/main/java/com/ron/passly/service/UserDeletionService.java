@@ -0,0 +1,183 @@
+package com.ron.passly.service;
+
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.exception.UserNotFoundException;
+import com.ron.passly.model.User;
+import com.ron.passly.repository.PasswordRepository;
+import com.ron.passly.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes a user and their vault without loading the vault into the persistence context.
+ *
+ * Small vaults go in one transaction: a bulk delete of the entries, then the key and the user row
+ * (sync tombstones go with the user through the FK). Vaults above the async threshold are
+ * crypto-shredded instead: the data key is deleted and the user marked, which ends sign-in and
+ * makes the entries unreadable at once, and the entries are then purged in small throttled batches.
+ * A periodic sweep resumes purges interrupted by a restart, on whichever node picks them up.
+ * Sharded, everything runs on the user's shard and the directory entry goes with the user row.
+ */
+@Slf4j
+@Service
+public class UserDeletionService {
+
+    public enum Outcome { DELETED, SCHEDULED }
+
+    private static final int SWEEP_BATCH = 100;
+
+    private final UserRepository userRepository;
+    private final PasswordRepository passwordRepository;
+    private final ShardRouter shardRouter;
+    private final EncryptionService encryptionService;
+    private final VaultVersionService vaultVersionService;
+    private final TransactionTemplate transaction;
+    private final int asyncThreshold;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Duration sweepInterval;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UserDeletionService(UserRepository userRepository,
+                               PasswordRepository passwordRepository,
+                               ShardRouter shardRouter,
+                               EncryptionService encryptionService,
+                               VaultVersionService vaultVersionService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${users.deletion.async-threshold:5000}") int asyncThreshold,
+                               @Value("${users.deletion.batch-size:1000}") int batchSize,
+                               @Value("${users.deletion.batch-pause:100ms}") Duration batchPause,
+                               @Value("${users.deletion.sweep-interval:15m}") Duration sweepInterval) {
+        this.userRepository = userRepository;
+        this.passwordRepository = passwordRepository;
+        this.shardRouter = shardRouter;
+        this.encryptionService = encryptionService;
+        this.vaultVersionService = vaultVersionService;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.asyncThreshold = asyncThreshold;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.sweepInterval = sweepInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker.scheduleWithFixedDelay(this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    public Outcome deleteUser(String email) {
+        int shard = shardRouter.shardOfEmail(email).orElseThrow(() -> new UserNotFoundException(email));
+        DeletionStart start;
+        try (ShardRouter.Binding ignored = shardRouter.bind(shard)) {
+            start = transaction.execute(status -> {
+                User user = userRepository.findByEmail(email)
+                        .orElseThrow(() -> new UserNotFoundException(email));
+                UUID userId = user.getId();
+                vaultVersionService.evict(userId);
+
+                if (user.getDeletionRequestedAt() == null
+                        && passwordRepository.countByUserIdUpTo(userId, asyncThreshold + 1) <= asyncThreshold) {
+                    passwordRepository.skipTombstonesForTransaction();
+                    passwordRepository.deleteAllByUserId(userId);
+                    encryptionService.deleteUserKey(userId);
+                    userRepository.delete(user);
+                    return new DeletionStart(userId, Outcome.DELETED);
+                }
+
+                if (user.getDeletionRequestedAt() == null) {
+                    user.setDeletionRequestedAt(LocalDateTime.now());
+                    userRepository.save(user);
+                }
+                encryptionService.deleteUserKey(userId);
+                return new DeletionStart(userId, Outcome.SCHEDULED);
+            });
+        }
+
+        if (start.outcome() == Outcome.DELETED) {
+            shardRouter.unregister(start.userId());
+        } else {
+            schedulePurge(start.userId(), shard);
+        }
+        return start.outcome();
+    }
+
+    // Purges requested before the last sweep that are not running here: interrupted, or on a node that went away
+    void sweep() {
+        shardRouter.forEachShard(shard -> {
+            try {
+                LocalDateTime before = LocalDateTime.now().minus(sweepInterval);
+                userRepository.findIdsPendingDeletion(before, Limit.of(SWEEP_BATCH))
+                        .forEach(userId -> schedulePurge(userId, shard));
+            } catch (Exception e) {
+                log.warn("User purge sweep failed on shard {}, retrying next run: {}", shard, e.getMessage());
+            }
+        });
+    }
+
+    private void schedulePurge(UUID userId, int shard) {
+        if (inFlight.add(userId)) {
+            worker.execute(() -> purge(userId, shard));
+        }
+    }
+
+    private void purge(UUID userId, int shard) {
+        try (ShardRouter.Binding ignored = shardRouter.bind(shard)) {
+            long removed = 0;
+            int batch;
+            do {
+                batch = transaction.execute(status -> {
+                    passwordRepository.skipTombstonesForTransaction();
+                    return passwordRepository.deleteBatchByUserId(userId, batchSize);
+                });
+                removed += batch;
+                if (batch == batchSize) {
+                    Thread.sleep(batchPause.toMillis());
+                }
+            } while (batch == batchSize);
+
+            // Entries written by requests still in flight when the user was marked go with the row
+            transaction.executeWithoutResult(status -> userRepository.findById(userId).ifPresent(user -> {
+                passwordRepository.skipTombstonesForTransaction();
+                passwordRepository.deleteAllByUserId(userId);
+                userRepository.delete(user);
+            }));
+            shardRouter.unregister(userId);
+            log.info("Purged user {} and {} vault entries", userId, removed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Purge of user {} failed, the sweep will resume it: {}", userId, e.getMessage());
+        } finally {
+            inFlight.remove(userId);
+        }
+    }
+
+    private record DeletionStart(UUID userId, Outcome outcome) {
+    }
+}
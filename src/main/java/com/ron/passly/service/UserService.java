@@ -1,54 +1,252 @@
 package com.ron.passly.service;
 
+import com.ron.passly.config.CacheConfig;
+import com.ron.passly.datasource.ReadYourWritesTracker;
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.dto.AdminUserPage;
+import com.ron.passly.dto.AdminUserView;
 import com.ron.passly.dto.AuthUser;
+import com.ron.passly.exception.InvalidCursorException;
 import com.ron.passly.exception.UserAlreadyExistsException;
-import com.ron.passly.exception.UserNotFoundException;
+import com.ron.passly.model.TimeOrderedUuidGenerator;
 import com.ron.passly.model.User;
 import com.ron.passly.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // The order of the ucs_basic listing queries; String.compareTo orders by UTF-16 unit instead
+    private static final Comparator<AdminUserView> BY_EMAIL_CODE_POINTS =
+            (a, b) -> Arrays.compare(a.email().codePoints().toArray(), b.email().codePoints().toArray());
+
     private final UserRepository userRepository;
+    private final RegisteredEmailIndex registeredEmailIndex;
+    private final ReadYourWritesTracker readYourWrites;
+    private final UserDeletionService userDeletionService;
+    private final ShardRouter shardRouter;
+    // A new transaction per shard: one that already holds a connection would read that shard every time
+    private final TransactionTemplate shardReadTransaction;
+
+    public UserService(UserRepository userRepository,
+                       RegisteredEmailIndex registeredEmailIndex,
+                       ReadYourWritesTracker readYourWrites,
+                       UserDeletionService userDeletionService,
+                       ShardRouter shardRouter,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.registeredEmailIndex = registeredEmailIndex;
+        this.readYourWrites = readYourWrites;
+        this.userDeletionService = userDeletionService;
+        this.shardRouter = shardRouter;
+        this.shardReadTransaction = new TransactionTemplate(transactionManager);
+        this.shardReadTransaction.setReadOnly(true);
+        this.shardReadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
+    /**
+     * Gives a new user its id and binds the shard it will be created on; a no-op when not sharded.
+     * Callers that write more of the user's rows in the same transaction bind this before the first query.
+     */
+    public ShardRouter.Binding placeNewUser(User user) {
+        if (!shardRouter.isSharded()) {
+            return () -> { };
+        }
+        if (user.getId() == null) {
+            user.setId(TimeOrderedUuidGenerator.next());
+        }
+        return shardRouter.bind(shardRouter.placementOf(user.getId()));
+    }
+
+    // The Bloom filter only skips the pre-check; the unique constraint on users.email decides
+    // (sharded, the one on user_directory, since each shard only sees its own users)
     public User createUser(User user) {
-        userRepository.findByEmail(user.getEmail())
-                .ifPresent(u -> { throw new UserAlreadyExistsException(user.getEmail()); });
-        return userRepository.save(user);
+        if (registeredEmailIndex.mightBeRegistered(user.getEmail()) && isRegistered(user.getEmail())) {
+            throw new UserAlreadyExistsException(user.getEmail());
+        }
+        if (!shardRouter.isSharded()) {
+            return save(user);
+        }
+
+        try (ShardRouter.Binding ignored = placeNewUser(user)) {
+            claimEmail(user.getId(), user.getEmail());
+            try {
+                return save(user);
+            } catch (RuntimeException ex) {
+                shardRouter.unregister(user.getId());
+                throw ex;
+            }
+        }
+    }
+
+    private boolean isRegistered(String email) {
+        return shardRouter.isSharded() ? shardRouter.shardOfEmail(email).isPresent() : userRepository.existsByEmail(email);
+    }
+
+    // The directory lives on shard 0, outside the caller's transaction: give the email back if that rolls back
+    private void claimEmail(UUID userId, String email) {
+        try {
+            shardRouter.register(userId, email, shardRouter.currentShard());
+        } catch (DuplicateKeyException ex) {
+            registeredEmailIndex.add(email);
+            throw new UserAlreadyExistsException(email);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        shardRouter.unregister(userId);
+                    }
+                }
+            });
+        }
+    }
+
+    private User save(User user) {
+        try {
+            User savedUser = userRepository.saveAndFlush(user);
+            registeredEmailIndex.add(savedUser.getEmail());
+            // Not authenticated yet, so name the writer: the first login must not hit a lagging replica
+            readYourWrites.recordWrite(savedUser.getEmail());
+            return savedUser;
+        } catch (DataIntegrityViolationException ex) {
+            if (isUniqueViolation(ex)) {
+                registeredEmailIndex.add(user.getEmail());
+                throw new UserAlreadyExistsException(user.getEmail());
+            }
+            throw ex;
+        }
     }
-    @Cacheable("users")
+
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        return shardRouter.shardOfEmail(email)
+                .flatMap(shard -> shardRouter.onShard(shard, () -> userRepository.findByEmail(email)));
     }
 
-    @CacheEvict("users")
+    @CacheEvict(value = CacheConfig.AUTH_CACHE, key = "#user.email")
     public User updateUser(User user) {
-        return userRepository.save(user);
+        try (ShardRouter.Binding ignored = shardRouter.bindUser(user.getId())) {
+            return userRepository.save(user);
+        }
     }
 
-    @Cacheable(value = "auth-cache", key = "#email.toLowerCase()")
+    // sync = true: concurrent misses for the same email share a single DB query.
+    // Sharded, the email is first resolved to its shard through the directory, so sign-in touches one shard.
+    // Keyed on the exact email: emails are unique case-sensitively, so two accounts may differ only in case.
+    @Cacheable(value = CacheConfig.AUTH_CACHE, key = "#email", sync = true)
+    @Transactional(readOnly = true)
     public Optional<AuthUser> findAuthDataByEmail(String email) {
-        return userRepository.findAuthDataByEmail(email);
+        Optional<Integer> shard = shardRouter.shardOfEmail(email);
+        if (shard.isEmpty()) {
+            return Optional.empty();
+        }
+        try (ShardRouter.Binding ignored = shardRouter.bind(shard.get())) {
+            return readYourWrites.readAs(email, () -> userRepository.findAuthDataByEmail(email));
+        }
+    }
+
+    /**
+     * One page of users ordered by email, optionally restricted to an email prefix.
+     * A projection, so no entities, role collections or vault rows are loaded; the total is
+     * the planner's estimate rather than a COUNT(*) over the whole table.
+     * Sharded, every shard returns its own first page, each in its own transaction, and the pages
+     * are merged; with the email as the cursor the next page seeks past it on every shard alike.
+     */
+    public AdminUserPage listUsers(String cursor, String emailPrefix, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Limit limit = Limit.of(size + 1);
+        String after = cursor == null || cursor.isBlank() ? "" : decodeCursor(cursor);
+
+        boolean unfiltered = emailPrefix == null || emailPrefix.isEmpty();
+        String upperBound = unfiltered ? null : prefixUpperBound(emailPrefix);
+        if (!unfiltered && upperBound == null) {
+            return new AdminUserPage(List.of(), null, null);
+        }
+
+        List<AdminUserView> rows = shardRouter.onEachShard(shard -> shardReadTransaction.execute(status -> unfiltered
+                        ? userRepository.findAdminViewsAfter(after, limit)
+                        : userRepository.findAdminViewsInRangeAfter(after, emailPrefix, upperBound, limit)))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(BY_EMAIL_CODE_POINTS)
+                .limit(size + 1)
+                .toList();
+        Long estimatedTotal = unfiltered
+                ? shardRouter.onEachShard(shard -> shardReadTransaction.execute(status ->
+                        Math.max(userRepository.estimateUserCount(), 0))).stream()
+                        .mapToLong(Long::longValue).sum()
+                : null;
+
+        if (rows.size() <= size) {
+            return new AdminUserPage(rows, null, estimatedTotal);
+        }
+        List<AdminUserView> page = rows.subList(0, size);
+        return new AdminUserPage(List.copyOf(page), encodeCursor(page.get(size - 1).email()), estimatedTotal);
+    }
+
+    // Evicted after the deletion transaction: a pending purge already blocks sign-in
+    @CacheEvict(value = CacheConfig.AUTH_CACHE, key = "#email")
+    public UserDeletionService.Outcome deleteUserByEmail(String email) {
+        return userDeletionService.deleteUser(email);
+    }
+
+    // Smallest string above every string starting with prefix, in code point order;
+    // null for a prefix made only of U+10FFFF, which no valid email can start with
+    private static String prefixUpperBound(String prefix) {
+        int[] codePoints = prefix.codePoints().toArray();
+        int end = codePoints.length;
+        while (end > 0 && codePoints[end - 1] == Character.MAX_CODE_POINT) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        int next = codePoints[end - 1] + 1;
+        codePoints[end - 1] = next == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : next;
+        return new String(codePoints, 0, end);
+    }
+
+    // Cursor = base64url(UTF-8 email) of the last row returned; email is unique so it is a full key
+    private static String encodeCursor(String email) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(email.getBytes(StandardCharsets.UTF_8));
     }
 
-    public Page<User> findAll(Pageable pageable) {
-        return userRepository.findAll(pageable);
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
     }
 
-    public void deleteUserByEmail(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UserNotFoundException(email));
-        userRepository.delete(user);
+    private static boolean isUniqueViolation(DataIntegrityViolationException ex) {
+        return ex instanceof DuplicateKeyException
+                || ex.getCause() instanceof ConstraintViolationException cve
+                && cve.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
     }
 
 }
@@ -0,0 +1,85 @@
+package com.ron.passly.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.repository.PasswordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's vault as NDJSON, one encrypted entry per line.
+ *
+ * Rows come from a server-side cursor as DTO projections, so nothing is held in the
+ * persistence context and heap use is one fetch batch regardless of vault size.
+ * Writes block when the client reads slowly, which in turn stops the cursor from advancing:
+ * a slow client costs a thread and a connection, not memory.
+ */
+@Slf4j
+@Service
+public class VaultExportService {
+
+    // Flush regularly so the client sees progress and the servlet buffer does not grow
+    private static final int FLUSH_EVERY = 200;
+
+    private final PasswordRepository passwordRepository;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    // Resolved once: writeValue on the mapper would look up the serializer for every row
+    private final ObjectWriter rowWriter;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public VaultExportService(PasswordRepository passwordRepository,
+                              ShardRouter shardRouter,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager) {
+        this.passwordRepository = passwordRepository;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writerFor(PasswordSummary.class);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Streams on an async request thread, so the shard bound by the request filter is not inherited
+    public void writeExport(UUID userId, OutputStream out) throws IOException {
+        try (ShardRouter.Binding ignored = shardRouter.bindUser(userId);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            int written = readOnlyTransaction.execute(status -> {
+                int count = 0;
+                try (Stream<PasswordSummary> rows = passwordRepository.streamSummariesByUserId(userId)) {
+                    for (PasswordSummary row : (Iterable<PasswordSummary>) rows::iterator) {
+                        rowWriter.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                        if (++count % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Client went away: end the transaction and release the cursor
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+
+            generator.flush();
+            log.info("Exported {} entries for user {}", written, userId);
+        } catch (UncheckedIOException e) {
+            log.info("Export for user {} aborted by client: {}", userId, e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+}
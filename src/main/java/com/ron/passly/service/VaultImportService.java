@@ -0,0 +1,269 @@
+package com.ron.passly.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.dto.ImportEntry;
+import com.ron.passly.dto.ImportResult;
+import com.ron.passly.exception.InvalidCredentialsException;
+import com.ron.passly.exception.InvalidImportException;
+import com.ron.passly.model.Password;
+import com.ron.passly.model.User;
+import com.ron.passly.repository.PasswordRepository;
+import com.ron.passly.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Streams a vault import of the form {"masterPassword": "...", "entries": [{"name": "...", "value": "..."}, ...]}.
+ *
+ * Entries are read one at a time with the Jackson streaming parser and handled in chunks:
+ * duplicates are filtered, values are encrypted in parallel, and each chunk is inserted in its
+ * own transaction with JDBC batching. Memory use is bounded by the chunk size, not the upload.
+ * A chunk that fails as a whole (e.g. a concurrent insert of the same name) is retried entry by
+ * entry so only the offending entries are reported.
+ * An If-Match version is checked under the user row lock in the first transaction that writes,
+ * or on its own if nothing is written.
+ */
+@Slf4j
+@Service
+public class VaultImportService {
+
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private final ObjectMapper objectMapper;
+    private final EncryptionService encryptionService;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordRepository passwordRepository;
+    private final UserRepository userRepository;
+    private final VaultVersionService vaultVersionService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxReportedFailures;
+
+    public VaultImportService(ObjectMapper objectMapper,
+                              EncryptionService encryptionService,
+                              PasswordEncoder passwordEncoder,
+                              PasswordRepository passwordRepository,
+                              UserRepository userRepository,
+                              VaultVersionService vaultVersionService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${vault.import.chunk-size:500}") int chunkSize,
+                              @Value("${vault.import.max-reported-failures:100}") int maxReportedFailures) {
+        this.objectMapper = objectMapper;
+        this.encryptionService = encryptionService;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordRepository = passwordRepository;
+        this.userRepository = userRepository;
+        this.vaultVersionService = vaultVersionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    private record PendingEntry(int index, ImportEntry entry) {
+    }
+
+    private record EncryptedEntry(int index, String name, String encryptedValue) {
+    }
+
+    // Running totals for one import
+    private final class Progress {
+        int imported;
+        int failed;
+        // If-Match version still to be verified; cleared once a committed write transaction checked it
+        Long expectedVersion;
+        final List<ImportResult.Failure> failures = new ArrayList<>();
+
+        void fail(int index, String name, String reason) {
+            failed++;
+            if (failures.size() < maxReportedFailures) {
+                failures.add(new ImportResult.Failure(index, name, reason));
+            }
+        }
+
+        ImportResult result() {
+            return new ImportResult(imported, failed, List.copyOf(failures), failed > failures.size());
+        }
+    }
+
+    public ImportResult importEntries(AuthUser authUser, InputStream body, Long expectedVersion) {
+        Progress progress = new Progress();
+        progress.expectedVersion = expectedVersion;
+        int nextIndex = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, "Import must be a JSON object");
+
+            String dataKey = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("masterPassword".equals(field)) {
+                    dataKey = unlock(authUser, value == JsonToken.VALUE_STRING ? parser.getText() : null);
+                } else if ("entries".equals(field)) {
+                    if (dataKey == null) {
+                        // The key is needed before the first chunk can be encrypted
+                        throw new InvalidImportException("masterPassword must come before entries");
+                    }
+                    expect(value, JsonToken.START_ARRAY, "entries must be an array");
+
+                    List<PendingEntry> chunk = new ArrayList<>(chunkSize);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        chunk.add(new PendingEntry(nextIndex++, parser.readValueAs(ImportEntry.class)));
+                        if (chunk.size() == chunkSize) {
+                            importChunk(authUser.id(), dataKey, chunk, progress);
+                            chunk.clear();
+                        }
+                    }
+                    expect(parser.currentToken(), JsonToken.END_ARRAY, "entries must only contain objects");
+                    importChunk(authUser.id(), dataKey, chunk, progress);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidImportException("Malformed import near entry " + nextIndex + " ("
+                    + progress.imported + " entries already imported): " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new InvalidImportException("Import upload failed after " + progress.imported + " entries");
+        }
+
+        if (progress.expectedVersion != null) {
+            long expected = progress.expectedVersion;
+            transactionTemplate.executeWithoutResult(status -> vaultVersionService.checkVersion(authUser.id(), expected));
+        }
+
+        log.info("Imported {} entries for user {} ({} failed)", progress.imported, authUser.id(), progress.failed);
+        return progress.result();
+    }
+
+    private String unlock(AuthUser authUser, String masterPassword) {
+        if (masterPassword == null || !passwordEncoder.matches(masterPassword, authUser.password())) {
+            throw new InvalidCredentialsException();
+        }
+        return encryptionService.unwrapUserKey(authUser.id(), masterPassword);
+    }
+
+    private void importChunk(UUID userId, String dataKey, List<PendingEntry> chunk, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Drop invalid entries and names that already exist, in the vault or earlier in this chunk
+        Set<String> names = new HashSet<>();
+        for (PendingEntry pending : chunk) {
+            if (pending.entry().name() != null) {
+                names.add(pending.entry().name());
+            }
+        }
+        Set<String> existing = names.isEmpty() ? Set.of() : passwordRepository.findExistingNames(userId, names);
+
+        Set<String> seen = new HashSet<>();
+        List<PendingEntry> accepted = new ArrayList<>(chunk.size());
+        for (PendingEntry pending : chunk) {
+            String rejection = validate(pending.entry(), existing, seen);
+            if (rejection != null) {
+                progress.fail(pending.index(), pending.entry().name(), rejection);
+            } else {
+                accepted.add(pending);
+            }
+        }
+
+        // AES is CPU bound and independent per entry
+        List<EncryptedEntry> encrypted = accepted.parallelStream()
+                .map(pending -> new EncryptedEntry(pending.index(), pending.entry().name(),
+                        encryptionService.encrypt(userId, pending.entry().value(), dataKey)))
+                .toList();
+
+        List<EncryptedEntry> storable = new ArrayList<>(encrypted.size());
+        for (EncryptedEntry entry : encrypted) {
+            if (entry.encryptedValue().length() > MAX_COLUMN_LENGTH) {
+                progress.fail(entry.index(), entry.name(), "value is too long");
+            } else {
+                storable.add(entry);
+            }
+        }
+
+        if (storable.isEmpty()) {
+            return;
+        }
+
+        try {
+            Long expectedVersion = progress.expectedVersion;
+            transactionTemplate.executeWithoutResult(status -> insert(userId, storable, expectedVersion));
+            progress.imported += storable.size();
+            progress.expectedVersion = null;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Import chunk rejected, retrying entries one by one: {}", e.getMessage());
+            for (EncryptedEntry entry : storable) {
+                try {
+                    Long expectedVersion = progress.expectedVersion;
+                    transactionTemplate.executeWithoutResult(status -> insert(userId, List.of(entry), expectedVersion));
+                    progress.imported++;
+                    progress.expectedVersion = null;
+                } catch (DataIntegrityViolationException single) {
+                    progress.fail(entry.index(), entry.name(), "already exists");
+                }
+            }
+        }
+    }
+
+    private static String validate(ImportEntry entry, Set<String> existing, Set<String> seen) {
+        if (entry.name() == null || entry.name().isBlank()) {
+            return "name is required";
+        }
+        if (entry.name().length() > MAX_COLUMN_LENGTH) {
+            return "name is too long";
+        }
+        if (entry.value() == null) {
+            return "value is required";
+        }
+        if (existing.contains(entry.name()) || !seen.add(entry.name())) {
+            return "already exists";
+        }
+        return null;
+    }
+
+    // Ids are generated in-process, so hibernate.jdbc.batch_size groups these into batched INSERTs
+    private void insert(UUID userId, List<EncryptedEntry> entries, Long expectedVersion) {
+        if (expectedVersion != null) {
+            vaultVersionService.checkVersion(userId, expectedVersion);
+        }
+
+        User owner = userRepository.getReferenceById(userId);
+        List<Password> passwords = new ArrayList<>(entries.size());
+        for (EncryptedEntry entry : entries) {
+            passwords.add(Password.builder()
+                    .user(owner)
+                    .name(entry.name())
+                    .encryptedValue(entry.encryptedValue())
+                    .build());
+        }
+        passwordRepository.saveAll(passwords);
+        passwordRepository.flush();
+        vaultVersionService.evict(userId);
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, String message) {
+        if (actual != expected) {
+            throw new InvalidImportException(message);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ron.passly.service;
+
+import com.ron.passly.dto.PasswordChange;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.dto.VaultChanges;
+import com.ron.passly.exception.InvalidCursorException;
+import com.ron.passly.exception.SyncCursorExpiredException;
+import com.ron.passly.model.PasswordTombstone;
+import com.ron.passly.repository.PasswordRepository;
+import com.ron.passly.repository.PasswordTombstoneRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delta sync over the per-user change sequence (see V4): each call returns what was written or
+ * deleted after the client's cursor, so its cost follows the number of changes, not vault size.
+ */
+@Service
+public class VaultSyncService {
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final PasswordRepository passwordRepository;
+    private final PasswordTombstoneRepository tombstoneRepository;
+    private final Duration tombstoneRetention;
+
+    public VaultSyncService(PasswordRepository passwordRepository,
+                            PasswordTombstoneRepository tombstoneRepository,
+                            @Value("${vault.sync.tombstone-retention:30d}") Duration tombstoneRetention) {
+        this.passwordRepository = passwordRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    /**
+     * Changes after cursor, oldest first. Without a cursor this is a full download of the live
+     * entries (no tombstones), ending with a cursor for later calls.
+     * REPEATABLE READ puts both queries on one snapshot, so a write committed in between cannot
+     * be skipped by the merged cursor.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public VaultChanges changesSince(UUID userId, String cursor, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Limit limit = Limit.of(size + 1);
+        boolean initial = cursor == null || cursor.isBlank();
+        long since = initial ? 0 : decodeCursor(cursor);
+
+        List<PasswordChange> written = passwordRepository.findChangesSince(userId, since, limit);
+        List<PasswordTombstone> deleted = initial
+                ? List.of()
+                : tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(userId, since, limit);
+
+        // Merge both sequence-ordered lists and keep the first size changes
+        List<PasswordSummary> upserted = new ArrayList<>();
+        List<UUID> deletedIds = new ArrayList<>();
+        long last = since;
+        int w = 0;
+        int d = 0;
+        while (upserted.size() + deletedIds.size() < size && (w < written.size() || d < deleted.size())) {
+            boolean takeWritten = d >= deleted.size()
+                    || (w < written.size() && written.get(w).changeSeq() < deleted.get(d).getChangeSeq());
+            if (takeWritten) {
+                PasswordChange change = written.get(w++);
+                upserted.add(change.toSummary());
+                last = change.changeSeq();
+            } else {
+                PasswordTombstone tombstone = deleted.get(d++);
+                deletedIds.add(tombstone.getPasswordId());
+                last = tombstone.getChangeSeq();
+            }
+        }
+
+        boolean hasMore = w < written.size() || d < deleted.size();
+        return new VaultChanges(upserted, deletedIds, encodeCursor(last), hasMore);
+    }
+
+    // Cursor = base64url(change seq + issue time); a cursor older than the tombstone retention
+    // may have missed deletions that were already compacted away
+    private static String encodeCursor(long changeSeq) {
+        ByteBuffer buffer = ByteBuffer.allocate(16)
+                .putLong(changeSeq)
+                .putLong(Instant.now().getEpochSecond());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private long decodeCursor(String cursor) {
+        long changeSeq;
+        long issuedAt;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            changeSeq = buffer.getLong();
+            issuedAt = buffer.getLong();
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new InvalidCursorException();
+        }
+        if (changeSeq < 0) {
+            throw new InvalidCursorException();
+        }
+        if (Instant.ofEpochSecond(issuedAt).isBefore(Instant.now().minus(tombstoneRetention))) {
+            throw new SyncCursorExpiredException();
+        }
+        return changeSeq;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ron.passly.service;
+
+import com.ron.passly.config.CacheConfig;
+import com.ron.passly.datasource.ReadYourWritesTracker;
+import com.ron.passly.exception.VaultVersionMismatchException;
+import com.ron.passly.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * The per-user vault version (users.vault_version, raised by the passwords triggers on every
+ * insert, update and delete) and the strong ETag derived from it.
+ *
+ * The version is always read on the primary, so no node can cache one a lagging replica returned.
+ * Responses take it before reading the vault, and read the vault on the primary too (see
+ * readAtCurrentVersion), so an ETag is never newer than the body it is sent with: a race can cost
+ * a client one extra download but never a wrong 304. A 304 reads no vault row at all.
+ */
+@Service
+@RequiredArgsConstructor
+public class VaultVersionService {
+
+    private final UserRepository userRepository;
+    private final ReadYourWritesTracker readYourWrites;
+
+    @Cacheable(value = CacheConfig.VAULT_VERSION_CACHE, key = "#userId", sync = true)
+    public Long currentVersion(UUID userId) {
+        try (ReadYourWritesTracker.Binding ignored = readYourWrites.readPrimary()) {
+            return userRepository.findVaultVersion(userId).orElse(0L);
+        }
+    }
+
+    // Wrap the vault read behind a full response in this: its ETag came from the primary
+    public ReadYourWritesTracker.Binding readAtCurrentVersion() {
+        return readYourWrites.readPrimary();
+    }
+
+    // Call inside the writing transaction: the cache is transaction aware and evicts after commit
+    @CacheEvict(value = CacheConfig.VAULT_VERSION_CACHE, key = "#userId")
+    public void evict(UUID userId) {
+    }
+
+    /**
+     * If-Match check for a write. Must run in the write's transaction: it takes the user row lock
+     * the triggers take, so the version cannot move until that transaction ends.
+     */
+    public void checkVersion(UUID userId, long expected) {
+        long actual = userRepository.lockVaultVersion(userId).orElse(0L);
+        if (actual != expected) {
+            throw new VaultVersionMismatchException();
+        }
+    }
+
+    public static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Version named by an If-Match header, null for "*" or no header.
+     * Weak or unparseable tags cannot match a strong ETag, so they fail the precondition.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new VaultVersionMismatchException();
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new VaultVersionMismatchException();
+        }
+    }
+}
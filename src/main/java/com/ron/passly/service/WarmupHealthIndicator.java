@@ -0,0 +1,24 @@
+package com.ron.passly.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * "warmup" health component: OUT_OF_SERVICE until the warm-up finished, then UP with its report.
+ */
+@Component("warmup")
+@RequiredArgsConstructor
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final WarmupService warmupService;
+
+    @Override
+    public Health health() {
+        if (!warmupService.isComplete()) {
+            return Health.outOfService().withDetail("status", "warming up").build();
+        }
+        return Health.up().withDetails(warmupService.getReport()).build();
+    }
+}
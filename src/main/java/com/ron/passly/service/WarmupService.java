@@ -0,0 +1,226 @@
+package com.ron.passly.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.dto.LoginRequest;
+import com.ron.passly.dto.LoginResponse;
+import com.ron.passly.model.Roles;
+import com.ron.passly.security.JwtService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Runs synthetic logins, token checks, vault crypto and JSON work before the app reports ready.
+ *
+ * Spring Boot only publishes ReadinessState.ACCEPTING_TRAFFIC after all ApplicationRunners
+ * return, so running synchronously here keeps the instance out of rotation until the hot paths
+ * are JIT compiled and SecureRandom is seeded. Rounds continue until the JIT stops compiling
+ * new code or the time budget runs out; readiness turns green either way.
+ */
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WarmupService implements ApplicationRunner {
+
+    private static final String WARMUP_PASSWORD = "warmup-Password-1";
+    // A round with less new compilation than this counts as settled
+    private static final long SETTLED_COMPILE_MS = 5;
+    private static final int SETTLED_ROUNDS = 5;
+
+    private final JwtService jwtService;
+    private final EncryptionService encryptionService;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final Duration timeBudget;
+    private final int minRounds;
+
+    private volatile boolean complete;
+    private volatile Map<String, Object> report = Map.of();
+
+    public WarmupService(JwtService jwtService,
+                         EncryptionService encryptionService,
+                         PasswordEncoder passwordEncoder,
+                         ObjectMapper objectMapper,
+                         @Value("${warmup.enabled:true}") boolean enabled,
+                         @Value("${warmup.time-budget:20s}") Duration timeBudget,
+                         @Value("${warmup.min-rounds:50}") int minRounds) {
+        this.jwtService = jwtService;
+        this.encryptionService = encryptionService;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.timeBudget = timeBudget;
+        this.minRounds = minRounds;
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * One warmed code path. Expensive ones (Argon2, PBKDF2) are capped at a few runs:
+     * their cost is in the hashing loop, which compiles after the first calls.
+     */
+    private static final class Workload {
+        final String name;
+        final Task task;
+        final int maxRuns;
+        final List<Long> samples = new ArrayList<>();
+
+        Workload(String name, int maxRuns, Task task) {
+            this.name = name;
+            this.task = task;
+            this.maxRuns = maxRuns;
+        }
+
+        void runOnce() throws Exception {
+            long start = System.nanoTime();
+            task.run();
+            samples.add(System.nanoTime() - start);
+        }
+
+        boolean exhausted() {
+            return samples.size() >= maxRuns;
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            complete = true;
+            return;
+        }
+
+        List<Workload> workloads = List.of();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean canMeasureJit = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + timeBudget.toNanos();
+        int rounds = 0;
+        int settledRounds = 0;
+        boolean budgetExhausted = false;
+
+        try {
+            workloads = buildWorkloads();
+            while (settledRounds < SETTLED_ROUNDS || rounds < minRounds) {
+                if (System.nanoTime() > deadline) {
+                    budgetExhausted = true;
+                    break;
+                }
+
+                long compileBefore = canMeasureJit ? jit.getTotalCompilationTime() : 0;
+                for (Workload workload : workloads) {
+                    if (!workload.exhausted()) {
+                        workload.runOnce();
+                    }
+                }
+                rounds++;
+
+                long compiled = canMeasureJit ? jit.getTotalCompilationTime() - compileBefore : 0;
+                settledRounds = compiled < SETTLED_COMPILE_MS ? settledRounds + 1 : 0;
+            }
+        } catch (Exception e) {
+            // Never block readiness on a warm-up failure, including one while setting the workloads up
+            log.warn("Warm-up aborted after {} rounds: {}", rounds, e.getMessage());
+        } finally {
+            long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+            report = buildReport(workloads, rounds, elapsedMs, budgetExhausted);
+            complete = true;
+        }
+
+        if (budgetExhausted) {
+            log.warn("Warm-up hit its {} budget before JIT compilation settled", timeBudget);
+        }
+        log.info("Warm-up finished in {} ms over {} rounds: {}", report.get("elapsedMs"), rounds, report.get("workloads"));
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public Map<String, Object> getReport() {
+        return report;
+    }
+
+    private List<Workload> buildWorkloads() {
+        AuthUser user = new AuthUser(UUID.randomUUID(), "warmup@passly.local", "unused",
+                Set.of(Roles.USER), "Warm", "Up");
+        String passwordHash = passwordEncoder.encode(WARMUP_PASSWORD);
+        String dataKey = encryptionService.generateRandomKey();
+        String salt = encryptionService.generateSalt();
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(user.email());
+        loginRequest.setPassword(WARMUP_PASSWORD);
+
+        return List.of(
+                new Workload("jwt", Integer.MAX_VALUE, () -> {
+                    String token = jwtService.generateToken(user);
+                    jwtService.isTokenValid(token, user.email());
+                    jwtService.extractEmail(token);
+                }),
+                new Workload("aes", Integer.MAX_VALUE, () -> {
+                    String cipherText = encryptionService.encrypt(user.id(), "warmup-secret-value", dataKey);
+                    encryptionService.decrypt(user.id(), cipherText, dataKey);
+                    encryptionService.generateSalt();
+                }),
+                new Workload("json", Integer.MAX_VALUE, () -> {
+                    byte[] body = objectMapper.writeValueAsBytes(loginRequest);
+                    objectMapper.readValue(body, LoginRequest.class);
+                    objectMapper.writeValueAsBytes(LoginResponse.builder()
+                            .id(user.id())
+                            .email(user.email())
+                            .firstName(user.firstName())
+                            .lastName(user.lastName())
+                            .token("warmup")
+                            .roles(List.copyOf(user.roles()))
+                            .build());
+                }),
+                new Workload("argon2", 5, () -> passwordEncoder.matches(WARMUP_PASSWORD, passwordHash)),
+                new Workload("pbkdf2", 5, () -> encryptionService.deriveKeyFromPassword(WARMUP_PASSWORD, salt))
+        );
+    }
+
+    // Cold = first call; steady = median of the last few calls
+    private static Map<String, Object> buildReport(List<Workload> workloads, int rounds, long elapsedMs,
+                                                   boolean budgetExhausted) {
+        Map<String, Object> perWorkload = new LinkedHashMap<>();
+        for (Workload workload : workloads) {
+            if (workload.samples.isEmpty()) {
+                continue;
+            }
+            long[] tail = workload.samples.subList(Math.max(0, workload.samples.size() - 10), workload.samples.size())
+                    .stream().mapToLong(Long::longValue).sorted().toArray();
+            perWorkload.put(workload.name, Map.of(
+                    "runs", workload.samples.size(),
+                    "coldMicros", workload.samples.get(0) / 1_000,
+                    "steadyMicros", tail[tail.length / 2] / 1_000));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rounds", rounds);
+        report.put("elapsedMs", elapsedMs);
+        report.put("budgetExhausted", budgetExhausted);
+        report.put("workloads", perWorkload);
+        return report;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ron.passly.store;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+
+/**
+ * Runs @Transactional and TransactionTemplate work as LogStore transactions, so the services
+ * keep their transaction boundaries on the embedded store. Propagation, suspension (REQUIRES_NEW)
+ * and synchronizations come from AbstractPlatformTransactionManager; isolation levels and
+ * timeouts are ignored, since writers are serialized anyway.
+ */
+public class EmbeddedTransactionManager extends AbstractPlatformTransactionManager {
+
+    private final LogStore store;
+
+    public EmbeddedTransactionManager(LogStore store) {
+        this.store = store;
+    }
+
+    private static final class StoreTransactionObject implements SmartTransactionObject {
+
+        private LogStore.Transaction transaction;
+
+        private StoreTransactionObject(LogStore.Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return transaction != null && transaction.isRollbackOnly();
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        return new StoreTransactionObject(store.currentTransaction());
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((StoreTransactionObject) transaction).transaction != null;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ((StoreTransactionObject) transaction).transaction = store.begin(definition.isReadOnly());
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        ((StoreTransactionObject) transaction).transaction = null;
+        return store.suspend();
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        store.resume((LogStore.Transaction) suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        store.commit(((StoreTransactionObject) status.getTransaction()).transaction);
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        store.rollback(((StoreTransactionObject) status.getTransaction()).transaction);
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        ((StoreTransactionObject) status.getTransaction()).transaction.setRollbackOnly();
+    }
+}
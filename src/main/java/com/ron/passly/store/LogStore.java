@@ -0,0 +1,667 @@
+package com.ron.passly.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, log-structured key-value store for single-node deployments (profile "embedded").
+ *
+ * Records are appended to preallocated, memory-mapped segment files and an in-memory index maps
+ * every (table, key) to its latest record, so a point read is a hash lookup and one copy out of the mapping.
+ * Writers are serialized by one lock held for the whole transaction. A commit appends a commit marker,
+ * releases the lock and waits for the flusher, which fsyncs every fsync-interval on behalf of all
+ * commits waiting at that moment. Recovery replays the segments in order, stops at a torn or corrupt
+ * tail and drops the records of any transaction without a commit marker.
+ * A failed fsync is not retried, since the data it covered may already be gone from the page cache:
+ * the commits waiting for it and every later write fail, and a restart recovers from what is on disk.
+ * Compaction copies the live records of the oldest segment to the head of the log and deletes the file.
+ * The directory is locked for the store's lifetime, so a second process cannot open it and corrupt the log.
+ *
+ * Readers are not isolated from a transaction in progress: they can see its writes before it commits,
+ * and a rollback undoes them in memory.
+ */
+@Slf4j
+public class LogStore implements AutoCloseable {
+
+    public static final int MAX_TABLES = 16;
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte COMMIT = 3;
+    // int body length, int CRC32C of the body
+    static final int HEADER = 8;
+    // op, table, transaction id, key
+    static final int FIXED = 1 + 1 + 8 + 16;
+    private static final UUID NO_KEY = new UUID(0, 0);
+    private static final int COMPACTION_SCAN = 4096;
+    private static final String LOCK_FILE = "LOCK";
+
+    /** Called under the writer lock for every change, including undo on rollback; null means absent. */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onChange(UUID key, byte[] before, byte[] after);
+    }
+
+    public static final class Transaction {
+
+        private final long id;
+        private final boolean readOnly;
+        private final List<Undo> undo = new ArrayList<>();
+        private final Set<String> flags = new HashSet<>();
+        private boolean writer;
+        private boolean rollbackOnly;
+
+        private Transaction(long id, boolean readOnly) {
+            this.id = id;
+            this.readOnly = readOnly;
+        }
+
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        // Transaction-scoped settings, the counterpart of SET LOCAL
+        public void setFlag(String flag) {
+            flags.add(flag);
+        }
+
+        public boolean hasFlag(String flag) {
+            return flags.contains(flag);
+        }
+
+        public boolean isRollbackOnly() {
+            return rollbackOnly;
+        }
+
+        public void setRollbackOnly() {
+            rollbackOnly = true;
+        }
+    }
+
+    private record Location(Segment segment, int offset, int length) {
+    }
+
+    private record Undo(int table, UUID key, Location previous) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration fsyncInterval;
+    private final double compactionThreshold;
+    @SuppressWarnings("unchecked")
+    private final Map<UUID, Location>[] index = new Map[MAX_TABLES];
+    @SuppressWarnings("unchecked")
+    private final List<ChangeListener>[] listeners = new List[MAX_TABLES];
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ThreadLocal<Transaction> current = new ThreadLocal<>();
+    private final AtomicLong nextTransactionId = new AtomicLong(1);
+    private final Object durability = new Object();
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-store-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread flusher;
+    private final FileChannel lockChannel;
+    private volatile Segment active;
+    private volatile boolean closed;
+    private boolean flushRequested;
+    private volatile RuntimeException flushFailure;
+
+    public LogStore(Path directory, int segmentSize, Duration fsyncInterval,
+                    double compactionThreshold, Duration compactionInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncInterval = fsyncInterval;
+        this.compactionThreshold = compactionThreshold;
+        for (int table = 0; table < MAX_TABLES; table++) {
+            index[table] = new ConcurrentHashMap<>();
+            listeners[table] = new CopyOnWriteArrayList<>();
+        }
+
+        lockChannel = lockDirectory();
+        long started = System.nanoTime();
+        try {
+            recover();
+        } catch (RuntimeException e) {
+            closeQuietly(lockChannel);
+            throw e;
+        }
+        log.info("Opened log store {} in {} ms: {} segments, {} records", directory,
+                (System.nanoTime() - started) / 1_000_000, segments.size(),
+                Stream.of(index).mapToLong(Map::size).sum());
+
+        flusher = new Thread(this::flushLoop, "log-store-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        compactor.scheduleWithFixedDelay(this::compactQuietly, compactionInterval.toMillis(),
+                compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void listen(int table, ChangeListener listener) {
+        listeners[table].add(listener);
+    }
+
+    public byte[] get(int table, UUID key) {
+        Location location = index[table].get(key);
+        return location == null ? null : value(location);
+    }
+
+    public boolean contains(int table, UUID key) {
+        return index[table].containsKey(key);
+    }
+
+    // Live view of the keys, for scans that stop early
+    public Set<UUID> keys(int table) {
+        return index[table].keySet();
+    }
+
+    public int size(int table) {
+        return index[table].size();
+    }
+
+    // Weakly consistent, like the index it walks; used to build secondary indexes at startup
+    public void forEach(int table, BiConsumer<UUID, byte[]> action) {
+        index[table].forEach((key, location) -> action.accept(key, value(location)));
+    }
+
+    public void put(int table, UUID key, byte[] value) {
+        write(table, key, value);
+    }
+
+    public boolean delete(int table, UUID key) {
+        return contains(table, key) && write(table, key, null);
+    }
+
+    // Runs work in the current transaction, or in its own one when there is none
+    public <T> T inTransaction(Supplier<T> work) {
+        if (current.get() != null) {
+            return work.get();
+        }
+        Transaction transaction = begin(false);
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            rollback(transaction);
+            throw e;
+        }
+        commit(transaction);
+        return result;
+    }
+
+    public Transaction begin(boolean readOnly) {
+        if (current.get() != null) {
+            throw new IllegalStateException("A transaction is already bound to this thread");
+        }
+        Transaction transaction = new Transaction(nextTransactionId.getAndIncrement(), readOnly);
+        current.set(transaction);
+        return transaction;
+    }
+
+    public Transaction currentTransaction() {
+        return current.get();
+    }
+
+    // Unbinds the current transaction so another can run on this thread (REQUIRES_NEW)
+    public Transaction suspend() {
+        Transaction transaction = current.get();
+        current.remove();
+        return transaction;
+    }
+
+    public void resume(Transaction transaction) {
+        current.set(transaction);
+    }
+
+    // Takes the writer lock for the rest of the current transaction, like SELECT ... FOR UPDATE
+    public void lockForWrite() {
+        Transaction transaction = current.get();
+        if (transaction == null) {
+            throw new IllegalStateException("lockForWrite needs a transaction");
+        }
+        acquireWriter(transaction);
+    }
+
+    public void commit(Transaction transaction) {
+        Location marker = null;
+        try {
+            if (!transaction.undo.isEmpty()) {
+                marker = append(record(COMMIT, 0, transaction.id, NO_KEY, null));
+            }
+        } finally {
+            release(transaction);
+        }
+        if (marker != null) {
+            awaitDurable(marker);
+        }
+    }
+
+    public void rollback(Transaction transaction) {
+        try {
+            for (int i = transaction.undo.size() - 1; i >= 0; i--) {
+                Undo undo = transaction.undo.get(i);
+                Location changed = index[undo.table()].get(undo.key());
+                relocate(undo.table(), undo.key(), undo.previous());
+                notifyListeners(undo.table(), undo.key(), changed == null ? null : value(changed),
+                        undo.previous() == null ? null : value(undo.previous()));
+            }
+        } finally {
+            release(transaction);
+        }
+    }
+
+    /**
+     * Compacts the oldest segment once garbage makes up compaction-threshold of the sealed segments.
+     * Live records are copied in short batches under the writer lock; a record rewritten meanwhile
+     * is simply no longer live. Delete records are dropped: there is no older segment they could mask.
+     */
+    public synchronized int compact() {
+        if (segments.size() < 2) {
+            return 0;
+        }
+        long total = 0;
+        long live = 0;
+        for (Segment segment : segments) {
+            if (segment != active) {
+                total += segment.position;
+                live += segment.liveBytes;
+            }
+        }
+        if (total == 0 || total - live < total * compactionThreshold) {
+            return 0;
+        }
+
+        Segment victim = segments.get(0);
+        int moved = 0;
+        int position = 0;
+        while (position < victim.position) {
+            Location last = null;
+            writeLock.lock();
+            try {
+                long transactionId = nextTransactionId.getAndIncrement();
+                for (int scanned = 0; scanned < COMPACTION_SCAN && position < victim.position; scanned++) {
+                    int length = HEADER + victim.getInt(position);
+                    if (victim.get(position + HEADER) == PUT) {
+                        int table = victim.get(position + HEADER + 1);
+                        UUID key = keyAt(victim, position);
+                        Location location = index[table].get(key);
+                        if (location != null && location.segment() == victim && location.offset() == position) {
+                            last = append(record(PUT, table, transactionId, key, value(location)));
+                            relocate(table, key, last);
+                            moved++;
+                        }
+                    }
+                    position += length;
+                }
+                if (last != null) {
+                    last = append(record(COMMIT, 0, transactionId, NO_KEY, null));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (last != null) {
+                awaitDurable(last);
+            }
+        }
+
+        segments.remove(victim);
+        victim.delete();
+        log.info("Compacted log segment {}: {} live records moved", victim.id, moved);
+        return moved;
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        writeLock.lock();
+        try {
+            closed = true;
+            Segment segment = active;
+            segment.force(segment.durable, segment.position);
+            segment.durable = segment.position;
+            synchronized (durability) {
+                durability.notifyAll();
+            }
+            segments.forEach(Segment::close);
+        } finally {
+            writeLock.unlock();
+            // Closing the channel releases the directory lock
+            closeQuietly(lockChannel);
+        }
+    }
+
+    private boolean write(int table, UUID key, byte[] value) {
+        return inTransaction(() -> {
+            Transaction transaction = current.get();
+            if (transaction.readOnly) {
+                throw new IllegalStateException("Write in a read-only transaction");
+            }
+            acquireWriter(transaction);
+            Location previous = index[table].get(key);
+            Location written = append(record(value == null ? DELETE : PUT, table, transaction.id, key, value));
+            relocate(table, key, value == null ? null : written);
+            transaction.undo.add(new Undo(table, key, previous));
+            notifyListeners(table, key, previous == null ? null : value(previous), value);
+            return true;
+        });
+    }
+
+    // Points the index at location (null removes the key) and moves the key's bytes between segments' live counts
+    private void relocate(int table, UUID key, Location location) {
+        Location replaced = location == null ? index[table].remove(key) : index[table].put(key, location);
+        if (replaced != null) {
+            replaced.segment().liveBytes -= replaced.length();
+        }
+        if (location != null) {
+            location.segment().liveBytes += location.length();
+        }
+    }
+
+    private void notifyListeners(int table, UUID key, byte[] before, byte[] after) {
+        for (ChangeListener listener : listeners[table]) {
+            listener.onChange(key, before, after);
+        }
+    }
+
+    private void acquireWriter(Transaction transaction) {
+        if (!transaction.writer) {
+            writeLock.lock();
+            transaction.writer = true;
+        }
+    }
+
+    private void release(Transaction transaction) {
+        if (current.get() == transaction) {
+            current.remove();
+        }
+        if (transaction.writer) {
+            transaction.writer = false;
+            writeLock.unlock();
+        }
+    }
+
+    // Under the writer lock
+    private Location append(byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("Log store is closed");
+        }
+        if (flushFailure != null) {
+            throw new IllegalStateException("Log store refuses writes after a failed fsync", flushFailure);
+        }
+        if (record.length > segmentSize - 4) {
+            throw new IllegalArgumentException("Record of " + record.length + " bytes does not fit a segment");
+        }
+        Segment segment = active;
+        // Keep a zero length after the last record: it marks the end of the log on recovery
+        if (segment.position + record.length > segment.capacity - 4) {
+            segment = roll();
+        }
+        int offset = segment.position;
+        segment.write(offset, record);
+        segment.position = offset + record.length;
+        return new Location(segment, offset, record.length);
+    }
+
+    // Seals the active segment durably, so only the active one is ever flushed in the background
+    private Segment roll() {
+        Segment sealed = active;
+        try {
+            flush(sealed, sealed.durable, sealed.position);
+        } catch (RuntimeException e) {
+            failFlush(e);
+            throw e;
+        }
+        Segment next = Segment.open(directory.resolve(fileName(sealed.id + 1)), sealed.id + 1, segmentSize);
+        segments.add(next);
+        active = next;
+        synchronized (durability) {
+            sealed.durable = sealed.position;
+            durability.notifyAll();
+        }
+        return next;
+    }
+
+    private void awaitDurable(Location location) {
+        Segment segment = location.segment();
+        int end = location.offset() + location.length();
+        if (segment.durable >= end) {
+            return;
+        }
+        synchronized (durability) {
+            flushRequested = true;
+            durability.notifyAll();
+            while (segment.durable < end && !closed && flushFailure == null) {
+                try {
+                    durability.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for fsync", e);
+                }
+            }
+            if (segment.durable < end && flushFailure != null) {
+                throw new IllegalStateException("Log store fsync failed, the commit may not be durable", flushFailure);
+            }
+        }
+    }
+
+    // Group commit: one fsync covers every commit that arrived during the batching window
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (durability) {
+                    while (!flushRequested && !closed) {
+                        durability.wait();
+                    }
+                    flushRequested = false;
+                }
+                if (!fsyncInterval.isZero()) {
+                    Thread.sleep(fsyncInterval.toMillis(), fsyncInterval.toNanosPart() % 1_000_000);
+                }
+                Segment segment = active;
+                int end = segment.position;
+                flush(segment, segment.durable, end);
+                synchronized (durability) {
+                    if (end > segment.durable) {
+                        segment.durable = end;
+                    }
+                    durability.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                failFlush(e);
+                return;
+            }
+        }
+    }
+
+    // Package-private so tests can make it fail
+    void flush(Segment segment, int from, int to) {
+        segment.force(from, to);
+    }
+
+    private void failFlush(RuntimeException e) {
+        log.error("Log store fsync failed, refusing further writes until restart: {}", e.getMessage());
+        synchronized (durability) {
+            flushFailure = e;
+            durability.notifyAll();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Log store compaction failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    // Held until close(); the OS drops it if the process dies, so a crash never leaves the directory locked
+    private FileChannel lockDirectory() {
+        FileChannel channel;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log store " + directory, e);
+        }
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Cannot lock log store " + directory, e);
+        } catch (OverlappingFileLockException e) {
+            // Already held by this JVM
+            lock = null;
+        }
+        if (lock == null) {
+            closeQuietly(channel);
+            throw new IllegalStateException("Log store " + directory + " is already in use by another store or process");
+        }
+        return channel;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close {}: {}", LOCK_FILE, e.getMessage());
+        }
+    }
+
+    private void recover() {
+        List<Path> files;
+        try {
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log store " + directory, e);
+        }
+        if (files.isEmpty()) {
+            files = List.of(directory.resolve(fileName(1)));
+        }
+
+        long lastTransaction = 0;
+        long pendingTransaction = -1;
+        List<Object[]> pending = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment = Segment.open(file, Integer.parseInt(name.substring(0, name.length() - 4)), segmentSize);
+            segments.add(segment);
+
+            int position = 0;
+            boolean torn = false;
+            while (position + HEADER + 4 <= segment.capacity) {
+                int length = segment.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < FIXED || position + HEADER + length > segment.capacity - 4) {
+                    torn = true;
+                    break;
+                }
+                crc.reset();
+                crc.update(segment.slice(position + HEADER, length));
+                if ((int) crc.getValue() != segment.getInt(position + 4)) {
+                    torn = true;
+                    break;
+                }
+
+                byte op = segment.get(position + HEADER);
+                long transactionId = segment.getLong(position + HEADER + 2);
+                lastTransaction = Math.max(lastTransaction, transactionId);
+                if (op == COMMIT) {
+                    if (transactionId == pendingTransaction) {
+                        for (Object[] change : pending) {
+                            relocate((int) change[0], (UUID) change[1], (Location) change[2]);
+                        }
+                    }
+                    pending.clear();
+                    pendingTransaction = -1;
+                } else {
+                    if (transactionId != pendingTransaction) {
+                        // The previous transaction never committed: rolled back, or cut off by a crash
+                        pending.clear();
+                        pendingTransaction = transactionId;
+                    }
+                    int table = segment.get(position + HEADER + 1);
+                    pending.add(new Object[]{table, keyAt(segment, position),
+                            op == PUT ? new Location(segment, position, HEADER + length) : null});
+                }
+                position += HEADER + length;
+            }
+
+            if (torn) {
+                log.warn("Discarding a torn record at offset {} of {}", position, file);
+                segment.write(position, new byte[segment.capacity - position]);
+                segment.force(position, segment.capacity);
+            }
+            segment.position = position;
+            segment.durable = position;
+        }
+        active = segments.get(segments.size() - 1);
+        nextTransactionId.set(lastTransaction + 1);
+    }
+
+    private static UUID keyAt(Segment segment, int position) {
+        return new UUID(segment.getLong(position + HEADER + 10), segment.getLong(position + HEADER + 18));
+    }
+
+    private static byte[] value(Location location) {
+        return location.segment().read(location.offset() + HEADER + FIXED, location.length() - HEADER - FIXED);
+    }
+
+    private static byte[] record(byte op, int table, long transactionId, UUID key, byte[] value) {
+        int bodyLength = FIXED + (value == null ? 0 : value.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + bodyLength)
+                .putInt(bodyLength)
+                .putInt(0)
+                .put(op)
+                .put((byte) table)
+                .putLong(transactionId)
+                .putLong(key.getMostSignificantBits())
+                .putLong(key.getLeastSignificantBits());
+        if (value != null) {
+            record.put(value);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER, bodyLength);
+        return record.putInt(4, (int) crc.getValue()).array();
+    }
+
+    private static String fileName(int id) {
+        return "%08d.log".formatted(id);
+    }
+}
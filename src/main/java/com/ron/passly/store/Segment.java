@@ -0,0 +1,98 @@
+package com.ron.passly.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One preallocated, memory-mapped log file. Appends and reads go through the mapping with
+ * absolute offsets, so concurrent readers never share a buffer position.
+ * Space after the last record is zero, which is how the end of the log is found on recovery.
+ */
+final class Segment {
+
+    final int id;
+    final Path file;
+    final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Written under the store's writer lock, read by the flusher and by compaction
+    volatile int position;
+    volatile int durable;
+    // Bytes of records the index still points at; the rest of [0, position) is garbage
+    volatile long liveBytes;
+
+    private Segment(int id, Path file, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.capacity = capacity;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Segment open(Path file, int id, int capacity) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            int size = (int) Math.max(channel.size(), capacity);
+            return new Segment(id, file, size, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open segment " + file, e);
+        }
+    }
+
+    int getInt(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    byte get(int offset) {
+        return buffer.get(offset);
+    }
+
+    ByteBuffer slice(int offset, int length) {
+        return buffer.slice(offset, length);
+    }
+
+    byte[] read(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    void write(int offset, byte[] bytes) {
+        buffer.put(offset, bytes);
+    }
+
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+-- Schema as previously created by Hibernate ddl-auto=update.
+-- Constraint names match what Hibernate/PostgreSQL generated, so databases that are
+-- baselined at this version (spring.flyway.baseline-on-migrate) and fresh ones converge.
+
+CREATE TABLE users (
+    id          uuid         NOT NULL,
+    email       varchar(255) NOT NULL,
+    password    varchar(255) NOT NULL,
+    first_name  varchar(255) NOT NULL,
+    last_name   varchar(255) NOT NULL,
+    roles_mask  integer      NOT NULL DEFAULT 0,
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT users_email_key UNIQUE (email)
+);
+
+CREATE TABLE user_encryption_keys (
+    id             uuid         NOT NULL,
+    user_id        uuid         NOT NULL,
+    encrypted_key  varchar(500) NOT NULL,
+    salt           varchar(255) NOT NULL,
+    created_at     timestamp(6) NOT NULL,
+    updated_at     timestamp(6),
+    CONSTRAINT user_encryption_keys_pkey PRIMARY KEY (id),
+    CONSTRAINT user_encryption_keys_user_id_key UNIQUE (user_id),
+    CONSTRAINT fkfp2n27661ge5a7dldcy3okajm FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE passwords (
+    id               uuid         NOT NULL,
+    user_id          uuid         NOT NULL,
+    name             varchar(255) NOT NULL,
+    encrypted_value  varchar(255) NOT NULL,
+    created_at       timestamp(6) NOT NULL,
+    updated_at       timestamp(6),
+    CONSTRAINT passwords_pkey PRIMARY KEY (id),
+    CONSTRAINT fkqiupw3oqiukdfyc45xvoky044 FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -0,0 +1,43 @@
+-- Databases baselined from ddl-auto=update may predate the roles bitmask
+ALTER TABLE users ADD COLUMN IF NOT EXISTS roles_mask integer NOT NULL DEFAULT 0;
+
+-- Copy the legacy user_roles element collection into the bitmask (USER=1, OWNER=2, ADMIN=4).
+-- user_roles itself is left in place so an older build can still be rolled back to.
+DO $$
+BEGIN
+    IF to_regclass('user_roles') IS NOT NULL THEN
+        UPDATE users u
+        SET roles_mask = r.mask
+        FROM (
+            SELECT user_id,
+                   bit_or(CASE role WHEN 'USER' THEN 1 WHEN 'OWNER' THEN 2 WHEN 'ADMIN' THEN 4 ELSE 0 END) AS mask
+            FROM user_roles
+            GROUP BY user_id
+        ) r
+        WHERE u.id = r.user_id AND u.roles_mask = 0;
+    END IF;
+END $$;
+
+-- Entry names were never enforced unique per user; keep the oldest and rename the rest
+-- instead of losing vault entries when the unique index below is created.
+UPDATE passwords p
+SET name = left(p.name, 200) || ' (' || p.id || ')'
+FROM (
+    SELECT id,
+           row_number() OVER (PARTITION BY user_id, name ORDER BY created_at, id) AS rn
+    FROM passwords
+) d
+WHERE p.id = d.id AND d.rn > 1;
+
+-- Superseded by ux_passwords_user_name (created by ddl-auto=update on some databases)
+DROP INDEX IF EXISTS idx_passwords_user_name_id;
+
+-- findByNameAndUser_Id and the keyset listing. Also serves the passwords.user_id foreign key.
+-- INCLUDE makes the listing projection an index-only scan; (name, id) > (?, ?) seeks on name.
+CREATE UNIQUE INDEX IF NOT EXISTS ux_passwords_user_name
+    ON passwords (user_id, name)
+    INCLUDE (id, created_at, updated_at, encrypted_value);
+
+-- Changes since a point in time, for sync
+CREATE INDEX IF NOT EXISTS idx_passwords_user_updated
+    ON passwords (user_id, updated_at);
@@ -0,0 +1,4 @@
+-- Admin listing: keyset seek and email-prefix ranges compared in code point order.
+-- users_email_key uses the database collation, which cannot serve prefix ranges outside "C".
+CREATE INDEX IF NOT EXISTS idx_users_email_ucs
+    ON users (email COLLATE ucs_basic);
@@ -0,0 +1,122 @@
+-- Change tracking for delta sync.
+-- Every insert/update stamps passwords.change_seq from vault_change_seq, every delete leaves a
+-- tombstone with one, and users.vault_version follows the highest number of the user's vault.
+-- The row trigger locks the user row before taking a number, so a user's writers are serialized
+-- and their numbers increase in commit order: a sync cursor can never skip a later commit.
+-- vault_version is raised once per statement, not per row, so bulk imports stay batched.
+CREATE SEQUENCE vault_change_seq;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS vault_version bigint NOT NULL DEFAULT 0;
+ALTER TABLE passwords ADD COLUMN IF NOT EXISTS change_seq bigint NOT NULL DEFAULT 0;
+
+-- Existing entries get numbers in modification order
+UPDATE passwords p
+SET change_seq = s.seq
+FROM (
+    SELECT id, row_number() OVER (ORDER BY coalesce(updated_at, created_at), id) AS seq
+    FROM passwords
+) s
+WHERE p.id = s.id;
+
+SELECT setval('vault_change_seq', (SELECT coalesce(max(change_seq), 0) + 1 FROM passwords), false);
+
+UPDATE users u
+SET vault_version = v.max_seq
+FROM (
+    SELECT user_id, max(change_seq) AS max_seq
+    FROM passwords
+    GROUP BY user_id
+) v
+WHERE u.id = v.user_id;
+
+-- Deleted entries, kept for the sync tombstone retention window (see TombstoneCompactor).
+-- Removed with their user.
+CREATE TABLE password_tombstones (
+    password_id  uuid         NOT NULL,
+    user_id      uuid         NOT NULL,
+    change_seq   bigint       NOT NULL,
+    deleted_at   timestamp(6) NOT NULL,
+    CONSTRAINT password_tombstones_pkey PRIMARY KEY (password_id),
+    CONSTRAINT fk_password_tombstones_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_password_tombstones_user_seq ON password_tombstones (user_id, change_seq);
+CREATE INDEX idx_password_tombstones_deleted_at ON password_tombstones (deleted_at);
+
+-- Sync reads changes by sequence; supersedes the updated_at index added for it in V2
+DROP INDEX IF EXISTS idx_passwords_user_updated;
+CREATE INDEX idx_passwords_user_change_seq ON passwords (user_id, change_seq);
+
+-- Row level: lock the owner (a no-op after the first row of a transaction), then number the change
+CREATE FUNCTION passwords_stamp_change() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM 1 FROM users WHERE id = OLD.user_id FOR NO KEY UPDATE;
+        -- No user row: the user is being deleted and takes its tombstones with it
+        IF FOUND THEN
+            INSERT INTO password_tombstones (password_id, user_id, change_seq, deleted_at)
+            VALUES (OLD.id, OLD.user_id, nextval('vault_change_seq'), now());
+        END IF;
+        RETURN OLD;
+    END IF;
+
+    PERFORM 1 FROM users WHERE id = NEW.user_id FOR NO KEY UPDATE;
+    NEW.change_seq := nextval('vault_change_seq');
+    RETURN NEW;
+END
+$$;
+
+-- Statement level: one vault_version update per affected user
+CREATE FUNCTION passwords_bump_vault_version() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        UPDATE users u
+        SET vault_version = v.max_seq
+        FROM (
+            SELECT t.user_id, max(t.change_seq) AS max_seq
+            FROM password_tombstones t
+            JOIN changed_rows c ON c.id = t.password_id
+            GROUP BY t.user_id
+        ) v
+        WHERE u.id = v.user_id AND u.vault_version < v.max_seq;
+    ELSE
+        UPDATE users u
+        SET vault_version = v.max_seq
+        FROM (
+            SELECT user_id, max(change_seq) AS max_seq
+            FROM changed_rows
+            GROUP BY user_id
+        ) v
+        WHERE u.id = v.user_id AND u.vault_version < v.max_seq;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER passwords_stamp_write
+    BEFORE INSERT OR UPDATE ON passwords
+    FOR EACH ROW EXECUTE FUNCTION passwords_stamp_change();
+
+CREATE TRIGGER passwords_record_delete
+    AFTER DELETE ON passwords
+    FOR EACH ROW EXECUTE FUNCTION passwords_stamp_change();
+
+-- Transition tables allow only one event per trigger
+CREATE TRIGGER passwords_version_insert
+    AFTER INSERT ON passwords
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION passwords_bump_vault_version();
+
+CREATE TRIGGER passwords_version_update
+    AFTER UPDATE ON passwords
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION passwords_bump_vault_version();
+
+CREATE TRIGGER passwords_version_delete
+    AFTER DELETE ON passwords
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION passwords_bump_vault_version();
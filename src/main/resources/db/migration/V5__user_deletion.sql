@@ -0,0 +1,33 @@
+-- Set when a large vault is being purged in the background (see UserDeletionService).
+-- Such users can no longer authenticate; the row goes once the vault is empty.
+ALTER TABLE users ADD COLUMN IF NOT EXISTS deletion_requested_at timestamp(6);
+
+-- Sweep for purges interrupted by a restart
+CREATE INDEX IF NOT EXISTS idx_users_deletion_requested
+    ON users (deletion_requested_at)
+    WHERE deletion_requested_at IS NOT NULL;
+
+-- Entries deleted together with their user need no tombstones: the sync client goes with the user.
+-- The purge sets passly.purge for its own transaction only (set_config(..., true)).
+CREATE OR REPLACE FUNCTION passwords_stamp_change() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        IF current_setting('passly.purge', true) = 'on' THEN
+            RETURN OLD;
+        END IF;
+        PERFORM 1 FROM users WHERE id = OLD.user_id FOR NO KEY UPDATE;
+        -- No user row: the user is being deleted and takes its tombstones with it
+        IF FOUND THEN
+            INSERT INTO password_tombstones (password_id, user_id, change_seq, deleted_at)
+            VALUES (OLD.id, OLD.user_id, nextval('vault_change_seq'), now());
+        END IF;
+        RETURN OLD;
+    END IF;
+
+    PERFORM 1 FROM users WHERE id = NEW.user_id FOR NO KEY UPDATE;
+    NEW.change_seq := nextval('vault_change_seq');
+    RETURN NEW;
+END
+$$;
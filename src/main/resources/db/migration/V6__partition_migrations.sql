@@ -0,0 +1,11 @@
+-- Progress of online hash-partitioning migrations (HashPartitionMigrator), one row per table.
+-- COPYING: mirror trigger installed, backfill at last_id; COPIED: ready for cutover; DONE: swapped.
+CREATE TABLE partition_migrations (
+    table_name  varchar(63)  NOT NULL,
+    partitions  integer      NOT NULL,
+    state       varchar(16)  NOT NULL,
+    last_id     uuid,
+    copied      bigint       NOT NULL DEFAULT 0,
+    updated_at  timestamp(6) NOT NULL DEFAULT now(),
+    CONSTRAINT partition_migrations_pkey PRIMARY KEY (table_name)
+);
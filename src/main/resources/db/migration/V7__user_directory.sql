@@ -0,0 +1,9 @@
+-- Shard directory (ShardDirectory): which shard holds each user. Only shard 0's copy is used;
+-- the unique email keeps addresses unique across shards. Empty and unused when not sharded.
+CREATE TABLE user_directory (
+    user_id  uuid         NOT NULL,
+    email    varchar(255) NOT NULL,
+    shard    integer      NOT NULL,
+    CONSTRAINT user_directory_pkey PRIMARY KEY (user_id),
+    CONSTRAINT user_directory_email_key UNIQUE (email)
+);
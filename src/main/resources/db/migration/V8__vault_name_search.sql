@@ -0,0 +1,10 @@
+-- Vault search by entry name (PasswordRepository.findNameMatches): case-insensitive substring
+-- and prefix matching within one user's vault. A trigram GIN index on lower(name) serves
+-- lower(name) LIKE '%term%'; btree_gin puts user_id in the same index, so a search only visits
+-- the entries of that vault. fastupdate is off so searches never scan a pending list left by
+-- bulk imports; inserts pay for the index update instead.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX IF NOT EXISTS idx_passwords_user_name_trgm
+    ON passwords USING gin (user_id, lower(name) gin_trgm_ops) WITH (fastupdate = off);
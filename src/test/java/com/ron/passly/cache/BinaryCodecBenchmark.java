@@ -0,0 +1,69 @@
+package com.ron.passly.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.Roles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Size and round-trip time of a cached AuthUser in the binary codec, JDK serialization and JSON.
+ * Only runs when asked:
+ *
+ *   mvn test -Dtest=BinaryCodecBenchmark -Dbenchmark.codec=true [-Dbenchmark.iterations=20000]
+ */
+@EnabledIfSystemProperty(named = "benchmark.codec", matches = "true")
+class BinaryCodecBenchmark {
+
+    private static final String ARGON2_HASH =
+            "$argon2id$v=19$m=65536,t=3,p=1$c29tZXNhbHRzb21lc2FsdA$eW91IGNhbid0IHJldmVyc2UgdGhpcyBoYXNo";
+
+    // What JdkSerializationRedisSerializer would have stored for the same snapshot
+    private record SerializableAuthUser(UUID id, String email, String password, EnumSet<Roles> roles,
+                                        String firstName, String lastName) implements Serializable {
+    }
+
+    @Test
+    void compareWithJdkAndJson() throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20_000);
+        BinaryCodec codec = new BinaryCodec(1024).register(1, AuthUser.class, new AuthUserCodec());
+        JdkSerializationRedisSerializer jdk = new JdkSerializationRedisSerializer();
+        ObjectMapper json = new ObjectMapper();
+
+        AuthUser user = new AuthUser(UUID.randomUUID(), "alice@passly.dev", ARGON2_HASH,
+                Set.of(Roles.USER, Roles.ADMIN), "Alice", "Liddell");
+        SerializableAuthUser jdkUser = new SerializableAuthUser(user.id(), user.email(), user.password(),
+                EnumSet.copyOf(user.roles()), user.firstName(), user.lastName());
+
+        long binaryNanos = time(iterations, () -> codec.deserialize(codec.serialize(user)));
+        long jdkNanos = time(iterations, () -> jdk.deserialize(jdk.serialize(jdkUser)));
+        long jsonNanos = time(iterations, () -> json.readValue(json.writeValueAsBytes(user), AuthUser.class));
+
+        System.out.printf("AuthUser size (bytes)   binary=%d jdk=%d json=%d%n",
+                codec.serialize(user).length, jdk.serialize(jdkUser).length, json.writeValueAsBytes(user).length);
+        System.out.printf("Round trip (ns/op)      binary=%d jdk=%d json=%d%n",
+                binaryNanos / iterations, jdkNanos / iterations, jsonNanos / iterations);
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    // Runs once untimed to warm up, then measures a second pass
+    private static long time(int iterations, Work work) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            work.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            work.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
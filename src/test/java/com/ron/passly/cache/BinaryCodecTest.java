@@ -0,0 +1,87 @@
+package com.ron.passly.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.Roles;
+import com.ron.passly.service.IdempotencyService.IdempotencyRecord;
+import com.ron.passly.service.IdempotencyService.State;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+
+    private static final String ARGON2_HASH =
+            "$argon2id$v=19$m=65536,t=3,p=1$c29tZXNhbHRzb21lc2FsdA$eW91IGNhbid0IHJldmVyc2UgdGhpcyBoYXNo";
+
+    private final BinaryCodec codec = new BinaryCodec(1024)
+            .register(1, AuthUser.class, new AuthUserCodec())
+            .register(2, IdempotencyRecord.class, new IdempotencyRecordCodec());
+
+    // What JdkSerializationRedisSerializer would have stored for the same snapshot
+    private record SerializableAuthUser(UUID id, String email, String password, EnumSet<Roles> roles,
+                                        String firstName, String lastName) implements Serializable {
+    }
+
+    private static AuthUser sampleUser() {
+        return new AuthUser(UUID.randomUUID(), "alice@passly.dev", ARGON2_HASH,
+                Set.of(Roles.USER, Roles.ADMIN), "Alice", "Liddell");
+    }
+
+    @Test
+    void roundTripsAuthUser() {
+        AuthUser user = sampleUser();
+
+        AuthUser decoded = (AuthUser) codec.deserialize(codec.serialize(user));
+
+        assertEquals(user, decoded);
+    }
+
+    @Test
+    void compressesLargeValuesAndRoundTrips() {
+        byte[] body = "{\"token\":\"abc\",\"message\":\"ok\"}".repeat(200).getBytes(StandardCharsets.UTF_8);
+        IdempotencyRecord record = new IdempotencyRecord(State.COMPLETED, "fp", 200, "application/json", body);
+
+        byte[] encoded = codec.serialize(record);
+        IdempotencyRecord decoded = (IdempotencyRecord) codec.deserialize(encoded);
+
+        assertTrue(encoded.length < body.length / 4, "encoded: " + encoded.length);
+        assertEquals(State.COMPLETED, decoded.state());
+        assertEquals(200, decoded.status());
+        assertArrayEquals(body, decoded.body());
+    }
+
+    @Test
+    void rejectsUnregisteredTypesAndNewerVersions() {
+        assertThrows(SerializationException.class, () -> codec.serialize("plain string"));
+
+        byte[] encoded = codec.serialize(sampleUser());
+        encoded[3] = 2;
+        assertThrows(SerializationException.class, () -> codec.deserialize(encoded));
+    }
+
+    @Test
+    void isSmallerThanJdkAndJson() throws Exception {
+        AuthUser user = sampleUser();
+        SerializableAuthUser jdkUser = new SerializableAuthUser(user.id(), user.email(), user.password(),
+                EnumSet.copyOf(user.roles()), user.firstName(), user.lastName());
+
+        int binarySize = codec.serialize(user).length;
+        int jdkSize = new JdkSerializationRedisSerializer().serialize(jdkUser).length;
+        int jsonSize = new ObjectMapper().writeValueAsBytes(user).length;
+
+        assertTrue(binarySize < jsonSize, "binary " + binarySize + " vs json " + jsonSize);
+        assertTrue(binarySize < jdkSize, "binary " + binarySize + " vs jdk " + jdkSize);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ron.passly.controller;
+
+import com.ron.passly.model.Password;
+import com.ron.passly.model.Roles;
+import com.ron.passly.model.User;
+import com.ron.passly.repository.PasswordRepository;
+import com.ron.passly.repository.UserRepository;
+import com.ron.passly.security.JwtService;
+import com.ron.passly.service.PasswordService;
+import com.ron.passly.service.UserService;
+import com.ron.passly.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Each use case runs exactly the queries it needs: no association loads, no N+1.
+ * Every endpoint is called once first, so the counts are for a warm auth and vault-version cache.
+ * Needs a live PostgreSQL, so it only runs when SPRING_DATASOURCE_URL is set.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.ron.passly.support.QueryCounter")
+@AutoConfigureMockMvc
+class QueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordRepository passwordRepository;
+    @Autowired
+    private PasswordService passwordService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private JwtService jwtService;
+
+    private User user;
+    private String bearer;
+
+    @BeforeEach
+    void createUserWithVault() {
+        user = userRepository.save(User.builder()
+                .email("query-count-" + UUID.randomUUID() + "@passly.dev")
+                .password("unused")
+                .firstName("Query")
+                .lastName("Count")
+                .build());
+        user.setRoles(EnumSet.of(Roles.USER, Roles.ADMIN));
+        user = userRepository.save(user);
+        for (int i = 0; i < 5; i++) {
+            passwordService.createPassword(user, Password.builder().name("entry-" + i).encryptedValue("v").build());
+        }
+        bearer = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @AfterEach
+    void deleteUser() {
+        userService.deleteUserByEmail(user.getEmail());
+    }
+
+    @Test
+    void vaultListingRunsOnlyThePageQuery() throws Exception {
+        assertEquals(1, queriesFor("/api/password").size());
+    }
+
+    @Test
+    void initialSyncRunsOnlyTheChangesQuery() throws Exception {
+        assertEquals(1, queriesFor("/api/password/sync").size());
+    }
+
+    @Test
+    void adminListingRunsPageAndEstimateQueries() throws Exception {
+        assertEquals(2, queriesFor("/api/users").size());
+    }
+
+    @Test
+    void loadingVaultEntitiesDoesNotLoadTheirOwner() {
+        QueryCounter.reset();
+
+        assertEquals(5, passwordService.findPasswordsByUserId(user.getId()).size());
+
+        assertEquals(1, QueryCounter.statements().size());
+    }
+
+    @Test
+    void deletingAnEntryDoesNotLoadItsOwner() {
+        UUID id = passwordRepository.findByNameAndUser_Id("entry-0", user.getId()).orElseThrow().getId();
+        QueryCounter.reset();
+
+        passwordService.deletePassword(user.getId(), id);
+
+        List<String> statements = QueryCounter.statements();
+        assertEquals(2, statements.size());
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains(" users ")), statements::toString);
+    }
+
+    private List<String> queriesFor(String path) throws Exception {
+        mockMvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, bearer)).andExpect(status().isOk());
+        QueryCounter.reset();
+        mockMvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, bearer)).andExpect(status().isOk());
+        return QueryCounter.statements();
+    }
+}
@@ -0,0 +1,138 @@
+package com.ron.passly.controller;
+
+import com.ron.passly.model.Roles;
+import com.ron.passly.model.User;
+import com.ron.passly.repository.UserRepository;
+import com.ron.passly.security.JwtService;
+import com.ron.passly.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The admin endpoints check the caller's authorities, not only that a token was sent,
+ * a user who is not an admin can delete only their own account, and roles are never taken from a request body.
+ * Needs a live PostgreSQL, so it only runs when SPRING_DATASOURCE_URL is set.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties = "warmup.enabled=false")
+@AutoConfigureMockMvc
+class UserControllerSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private JwtService jwtService;
+
+    private User user;
+    private User other;
+    private User admin;
+
+    @BeforeEach
+    void createUsers() {
+        user = createUser("user", EnumSet.of(Roles.USER));
+        other = createUser("other", EnumSet.of(Roles.USER));
+        admin = createUser("admin", EnumSet.of(Roles.USER, Roles.ADMIN));
+    }
+
+    @AfterEach
+    void deleteUsers() {
+        for (User created : List.of(user, other, admin)) {
+            if (userService.findByEmail(created.getEmail()).isPresent()) {
+                userService.deleteUserByEmail(created.getEmail());
+            }
+        }
+    }
+
+    @Test
+    void onlyAdminsListUsers() throws Exception {
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, bearer(user)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, bearer(admin)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void usersDeleteOnlyThemselves() throws Exception {
+        mockMvc.perform(delete("/api/users/email/" + other.getEmail()).header(HttpHeaders.AUTHORIZATION, bearer(user)))
+                .andExpect(status().isForbidden());
+        assertTrue(userService.findByEmail(other.getEmail()).isPresent());
+
+        mockMvc.perform(delete("/api/users/email/" + user.getEmail()).header(HttpHeaders.AUTHORIZATION, bearer(user)))
+                .andExpect(status().isOk());
+        assertTrue(userService.findByEmail(user.getEmail()).isEmpty());
+    }
+
+    @Test
+    void adminsDeleteAnyUser() throws Exception {
+        mockMvc.perform(delete("/api/users/email/" + other.getEmail()).header(HttpHeaders.AUTHORIZATION, bearer(admin)))
+                .andExpect(status().isOk());
+        assertTrue(userService.findByEmail(other.getEmail()).isEmpty());
+    }
+
+    @Test
+    void createdUsersGetTheDefaultRoleAndAHashedPassword() throws Exception {
+        String email = "created-" + UUID.randomUUID() + "@passly.dev";
+        mockMvc.perform(post("/api/users").header(HttpHeaders.AUTHORIZATION, bearer(admin))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"firstName":"Created","lastName":"User","email":"%s","password":"Secret1!",
+                                 "roles":["ADMIN"],"rolesMask":7,"id":"%s"}""".formatted(email, user.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roles").value(contains("USER")));
+        try {
+            User created = userService.findByEmail(email).orElseThrow();
+            assertEquals(EnumSet.of(Roles.USER), EnumSet.copyOf(created.getRoles()));
+            assertNotEquals(user.getId(), created.getId());
+            assertTrue(created.getPassword().startsWith("$argon2"), created.getPassword());
+        } finally {
+            userService.deleteUserByEmail(email);
+        }
+
+        mockMvc.perform(post("/api/users").header(HttpHeaders.AUTHORIZATION, bearer(admin))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"firstName":"Created","lastName":"User","email":"%s","password":"weak"}""".formatted(email)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private User createUser(String name, EnumSet<Roles> roles) {
+        User created = userRepository.save(User.builder()
+                .email(name + "-" + UUID.randomUUID() + "@passly.dev")
+                .password("unused")
+                .firstName("Security")
+                .lastName("Test")
+                .build());
+        created.setRoles(roles);
+        return userRepository.save(created);
+    }
+
+    private String bearer(User user) {
+        return "Bearer " + jwtService.generateToken(user);
+    }
+}
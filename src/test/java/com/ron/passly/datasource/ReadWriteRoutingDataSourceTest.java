@@ -0,0 +1,114 @@
+package com.ron.passly.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final ResultSet lag = mock(ResultSet.class);
+
+    private ReplicaSet replicas;
+    private ReadYourWritesTracker readYourWrites;
+    private ReadWriteRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(lag);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        HikariDataSource replica = mock(HikariDataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replica.getPoolName()).thenReturn("replica-1");
+
+        replicas = new ReplicaSet(List.of(replica), Duration.ofSeconds(5));
+        readYourWrites = new ReadYourWritesTracker(Duration.ofMinutes(1), 100);
+        routing = new ReadWriteRoutingDataSource(primary, replicas, readYourWrites);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void readOnlyTransactionsUseAHealthyReplica() throws SQLException {
+        replicaLag(0.5);
+        beginTransaction(true);
+
+        assertSame(replicaConnection, routing.getConnection());
+    }
+
+    @Test
+    void writesUseThePrimary() throws SQLException {
+        replicaLag(0);
+        beginTransaction(false);
+
+        assertSame(primaryConnection, routing.getConnection());
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhenReplicasLag() throws SQLException {
+        replicaLag(30);
+        beginTransaction(true);
+
+        assertSame(primaryConnection, routing.getConnection());
+    }
+
+    @Test
+    void readsStayOnThePrimaryAfterOwnWriteCommits() throws SQLException {
+        replicaLag(0);
+        beginTransaction(false);
+        readYourWrites.recordWrite("alice@example.com");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        tearDown();
+
+        beginTransaction(true);
+        assertSame(primaryConnection, readYourWrites.readAs("alice@example.com", this::connection));
+        assertSame(replicaConnection, readYourWrites.readAs("bob@example.com", this::connection));
+    }
+
+    private void replicaLag(double seconds) throws SQLException {
+        when(lag.getDouble(1)).thenReturn(seconds);
+        replicas.checkAll();
+    }
+
+    private static void beginTransaction(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private Connection connection() {
+        try {
+            return routing.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ron.passly.datasource;
+
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.Password;
+import com.ron.passly.repository.UserRepository;
+import com.ron.passly.service.PasswordService;
+import com.ron.passly.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * One request that reads in a read-only transaction and then writes. The "replica" is the
+ * primary database seen through a role that may only SELECT, so a write that lands on it fails.
+ * Each transaction has to pick its own connection, not reuse the one the request's first
+ * transaction took. Needs a live PostgreSQL, like PasslyApplicationTests.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties = {
+        "datasource.replicas.urls=${SPRING_DATASOURCE_URL}",
+        "datasource.replicas.username=" + ReplicaRoutingRequestTest.REPLICA_ROLE,
+        "datasource.replicas.password=" + ReplicaRoutingRequestTest.REPLICA_ROLE,
+        "datasource.replicas.check-interval=100ms",
+        // Otherwise the user's own reads stay on the primary after registering
+        "datasource.read-your-writes.window=1ms",
+        "warmup.enabled=false"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingRequestTest {
+
+    static final String REPLICA_ROLE = "passly_replica_test";
+    private static final String PASSWORD = "Secret123!";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ReplicaSet replicaSet;
+    @Autowired
+    private UserService userService;
+
+    private final String email = "routing-" + UUID.randomUUID() + "@passly.dev";
+
+    @BeforeAll
+    static void createReadOnlyRole() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(System.getenv("SPRING_DATASOURCE_URL"),
+                System.getenv("SPRING_DATASOURCE_USERNAME"), System.getenv("SPRING_DATASOURCE_PASSWORD"));
+             Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    DO $$ BEGIN
+                        IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = '%1$s') THEN
+                            CREATE ROLE %1$s LOGIN PASSWORD '%1$s';
+                        END IF;
+                    END $$""".formatted(REPLICA_ROLE));
+            statement.execute("GRANT SELECT ON ALL TABLES IN SCHEMA public TO " + REPLICA_ROLE);
+        }
+    }
+
+    @AfterEach
+    void deleteUser() {
+        userService.deleteUserByEmail(email);
+    }
+
+    @Test
+    void writeAfterAReplicaReadInTheSameRequestGoesToThePrimary() throws Exception {
+        waitForHealthyReplica();
+        MockHttpServletResponse registered = perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"firstName":"Routing","lastName":"Check","email":"%s","password":"%s"}""".formatted(email, PASSWORD)));
+        assertEquals(200, registered.getStatus(), registered.getContentAsString());
+        String token = registered.getContentAsString().replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+        Thread.sleep(10);
+
+        MockHttpServletResponse created = perform(post(ReadThenWriteController.PATH)
+                .header("Authorization", "Bearer " + token));
+
+        assertEquals(200, created.getStatus(), created.getContentAsString());
+        assertEquals("1", created.getContentAsString());
+    }
+
+    // No production endpoint reads in a read-only transaction before writing, so the test brings one
+    @TestConfiguration
+    @RestController
+    static class ReadThenWriteController {
+
+        static final String PATH = "/api/password/routing-check";
+
+        @Autowired
+        private PasswordService passwordService;
+        @Autowired
+        private UserRepository userRepository;
+
+        @PostMapping(PATH)
+        int readThenWrite(@AuthenticationPrincipal AuthUser authUser) {
+            passwordService.listPasswords(authUser.id(), null, PasswordService.DEFAULT_PAGE_SIZE);
+            passwordService.createPassword(userRepository.getReferenceById(authUser.id()),
+                    Password.builder().name("mail").encryptedValue("secret").build());
+            return passwordService.findPasswordsByUserId(authUser.id()).size();
+        }
+    }
+
+    private MockHttpServletResponse perform(RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private void waitForHealthyReplica() throws InterruptedException {
+        for (int i = 0; i < 100 && !replicaSet.anyHealthy(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(replicaSet.anyHealthy(), "replica never became healthy: " + replicaSet.describe());
+    }
+}
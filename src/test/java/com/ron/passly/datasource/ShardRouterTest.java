@@ -0,0 +1,63 @@
+package com.ron.passly.datasource;
+
+import com.ron.passly.model.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ShardRouterTest {
+
+    @Test
+    void spreadsTimeOrderedIdsEvenly() {
+        ShardRouter router = router(4);
+        int[] counts = new int[4];
+        for (int i = 0; i < 40_000; i++) {
+            counts[router.placementOf(TimeOrderedUuidGenerator.next())]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - 10_000) < 500, "per shard: " + count);
+        }
+    }
+
+    @Test
+    void addingAShardOnlyMovesKeysToIt() {
+        int moved = 0;
+        for (int i = 0; i < 40_000; i++) {
+            UUID id = TimeOrderedUuidGenerator.next();
+            long key = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+            int before = ShardRouter.jumpHash(key, 4);
+            int after = ShardRouter.jumpHash(key, 5);
+            if (before != after) {
+                assertEquals(4, after);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - 8_000) < 500, "moved: " + moved);
+    }
+
+    @Test
+    void nestedBindingsRestoreTheOuterShard() {
+        ShardRouter router = router(3);
+        assertEquals(0, router.currentShard());
+        try (ShardRouter.Binding outer = router.bind(2)) {
+            try (ShardRouter.Binding inner = router.bind(1)) {
+                assertEquals(1, router.currentShard());
+            }
+            assertEquals(2, router.currentShard());
+        }
+        assertEquals(0, router.currentShard());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ShardRouter router(int shards) {
+        List<String> urls = IntStream.range(0, shards).mapToObj(i -> "jdbc:postgresql:///s" + i).toList();
+        return new ShardRouter(urls, mock(ObjectProvider.class));
+    }
+}
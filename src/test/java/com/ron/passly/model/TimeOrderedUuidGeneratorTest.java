@@ -0,0 +1,56 @@
+package com.ron.passly.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void setsVersionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 1, "timestamp: " + millis);
+    }
+
+    @Test
+    void isStrictlyIncreasingInByteOrder() {
+        // Unsigned comparison of the high bits is how PostgreSQL orders uuid values
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 200_000; i++) {
+            UUID current = TimeOrderedUuidGenerator.next();
+            int cmp = Long.compareUnsigned(current.getMostSignificantBits(), previous.getMostSignificantBits());
+            assertTrue(cmp > 0, previous + " then " + current);
+            previous = current;
+        }
+    }
+
+    @Test
+    void staysUniqueAcrossThreads() throws InterruptedException {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(TimeOrderedUuidGenerator.next());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(400_000, ids.size());
+    }
+}
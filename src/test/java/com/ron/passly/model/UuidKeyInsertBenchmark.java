@@ -0,0 +1,103 @@
+package com.ron.passly.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput, primary key index size and WAL volume for random v4 versus UUIDv7 keys.
+ * Needs a scratch PostgreSQL database, so it only runs when asked:
+ *
+ *   mvn test -Dtest=UuidKeyInsertBenchmark -Dbenchmark.jdbc.url=jdbc:postgresql://localhost/bench \
+ *            -Dbenchmark.jdbc.user=postgres -Dbenchmark.jdbc.password=... [-Dbenchmark.rows=1000000]
+ */
+@EnabledIfSystemProperty(named = "benchmark.jdbc.url", matches = ".+")
+class UuidKeyInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    @Test
+    void compareRandomAndTimeOrderedKeys() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 1_000_000);
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url"),
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", ""))) {
+
+            // Warm both paths once so JIT and the connection do not favour the second run
+            run(connection, "uuid_bench_warmup", UUID::randomUUID, 50_000);
+            run(connection, "uuid_bench_warmup", TimeOrderedUuidGenerator::next, 50_000);
+
+            Result v4 = run(connection, "uuid_bench_v4", UUID::randomUUID, rows);
+            Result v7 = run(connection, "uuid_bench_v7", TimeOrderedUuidGenerator::next, rows);
+
+            System.out.printf("%d rows, batches of %d%n", rows, BATCH_SIZE);
+            System.out.printf("v4: %,8d rows/s  pkey %,6d kB  WAL %,7d kB%n", v4.rowsPerSecond(), v4.indexKb(), v4.walKb());
+            System.out.printf("v7: %,8d rows/s  pkey %,6d kB  WAL %,7d kB%n", v7.rowsPerSecond(), v7.indexKb(), v7.walKb());
+        }
+    }
+
+    private record Result(long rowsPerSecond, long indexKb, long walKb) {
+    }
+
+    private static Result run(Connection connection, String table, Supplier<UUID> ids, int rows) throws Exception {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + table);
+            // Same shape as passwords
+            ddl.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, user_id uuid NOT NULL, "
+                    + "name varchar(255) NOT NULL, encrypted_value varchar(255) NOT NULL, created_at timestamp(6) NOT NULL)");
+            ddl.execute("CHECKPOINT");
+        }
+
+        long walBefore = walPosition(connection);
+        long start = System.nanoTime();
+
+        connection.setAutoCommit(false);
+        UUID userId = UUID.randomUUID();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, user_id, name, encrypted_value, created_at) VALUES (?, ?, ?, ?, now())")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setObject(1, ids.get());
+                insert.setObject(2, userId);
+                insert.setString(3, "entry-" + i);
+                insert.setString(4, "c2VjcmV0LWNpcGhlcnRleHQtcGxhY2Vob2xkZXItdmFsdWU=");
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long walBytes = walPosition(connection) - walBefore;
+        long indexBytes = queryLong(connection, "SELECT pg_relation_size('" + table + "_pkey')");
+
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE " + table);
+        }
+        return new Result(rows * 1_000_000_000L / elapsedNanos, indexBytes / 1024, walBytes / 1024);
+    }
+
+    private static long walPosition(Connection connection) throws Exception {
+        return queryLong(connection, "SELECT pg_current_wal_lsn() - '0/0'::pg_lsn");
+    }
+
+    private static long queryLong(Connection connection, String sql) throws Exception {
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.datasource.ReadYourWritesTracker;
+import com.ron.passly.dto.PasswordPage;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.model.Password;
+import com.ron.passly.model.User;
+import com.ron.passly.service.PasswordService;
+import com.ron.passly.service.VaultVersionService;
+import com.ron.passly.store.LogStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmbeddedPasswordSearchTest {
+
+    @TempDir
+    Path directory;
+
+    private LogStore store;
+    private EmbeddedPasswordRepository passwords;
+    private PasswordService passwordService;
+    private User user;
+
+    @BeforeEach
+    void openStore() {
+        store = new LogStore(directory, 64 * 1024, Duration.ZERO, 0.5, Duration.ofHours(1));
+        EmbeddedPasswordTombstoneRepository tombstones = new EmbeddedPasswordTombstoneRepository(store);
+        EmbeddedUserRepository users = new EmbeddedUserRepository(store, tombstones);
+        passwords = new EmbeddedPasswordRepository(store, users, tombstones);
+        passwordService = new PasswordService(passwords,
+                new VaultVersionService(users, new ReadYourWritesTracker(Duration.ofSeconds(1), 100)));
+        user = users.save(User.builder()
+                .firstName("Search")
+                .lastName("Test")
+                .email("search@passly.dev")
+                .password("not-a-hash")
+                .build());
+        for (String name : List.of("gmail", "Mail", "Hotmail", "mailbox", "E-Mail Work", "bank")) {
+            passwordService.createPassword(user, Password.builder().name(name).encryptedValue("secret").build());
+        }
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void ranksWholeNamesThenPrefixesThenSubstrings() {
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 50));
+    }
+
+    @Test
+    void cursorCarriesThePageAcrossRanks() {
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 2));
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 1));
+    }
+
+    @Test
+    void renamedAndDeletedEntriesLeaveTheTrigramIndex() {
+        Password mailbox = passwords.findByNameAndUser_Id("mailbox", user.getId()).orElseThrow();
+        mailbox.setName("inbox");
+        passwords.save(mailbox);
+        Password bank = passwords.findByNameAndUser_Id("bank", user.getId()).orElseThrow();
+        passwordService.deletePassword(user.getId(), bank.getId());
+
+        // Three characters or more are looked up by trigram
+        assertEquals(List.of(), search("ilbo", 50));
+        assertEquals(List.of("inbox"), search("nbox", 50));
+        assertEquals(List.of(), search("ban", 50));
+        assertEquals(List.of("Mail", "E-Mail Work", "Hotmail", "gmail"), search("mail", 50));
+    }
+
+    // Every page in turn, so a wrong cursor shows up as a missing or repeated name
+    private List<String> search(String term, int pageSize) {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        do {
+            PasswordPage page = passwordService.searchPasswords(user.getId(), term, cursor, pageSize);
+            page.items().stream().map(PasswordSummary::name).forEach(names::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return names;
+    }
+}
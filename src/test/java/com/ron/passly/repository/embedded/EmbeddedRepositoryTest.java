@@ -0,0 +1,162 @@
+package com.ron.passly.repository.embedded;
+
+import com.ron.passly.dto.PasswordChange;
+import com.ron.passly.dto.PasswordMatch;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.model.Password;
+import com.ron.passly.model.PasswordTombstone;
+import com.ron.passly.model.User;
+import com.ron.passly.store.LogStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What the PostgreSQL triggers and constraints do, as the embedded repositories do it.
+ */
+class EmbeddedRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private LogStore store;
+    private EmbeddedPasswordTombstoneRepository tombstones;
+    private EmbeddedUserRepository users;
+    private EmbeddedPasswordRepository passwords;
+    private User user;
+
+    @BeforeEach
+    void openStore() {
+        store = new LogStore(directory, 64 * 1024, Duration.ZERO, 0.5, Duration.ofHours(1));
+        tombstones = new EmbeddedPasswordTombstoneRepository(store);
+        users = new EmbeddedUserRepository(store, tombstones);
+        passwords = new EmbeddedPasswordRepository(store, users, tombstones);
+        user = users.save(user("repository@passly.dev"));
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void writesStampTheChangeSeqAndRaiseTheVaultVersion() {
+        Password mail = passwords.save(entry("mail"));
+        assertTrue(mail.getChangeSeq() > 0);
+        assertEquals(mail.getChangeSeq(), vaultVersion());
+
+        Password bank = passwords.save(entry("bank"));
+        assertTrue(bank.getChangeSeq() > mail.getChangeSeq());
+        assertEquals(bank.getChangeSeq(), vaultVersion());
+
+        mail.setEncryptedValue("changed");
+        long updated = passwords.save(mail).getChangeSeq();
+        assertTrue(updated > bank.getChangeSeq());
+        assertEquals(updated, vaultVersion());
+
+        passwords.delete(bank);
+        List<PasswordTombstone> deleted = tombstones.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(
+                user.getId(), 0, Limit.unlimited());
+        assertEquals(1, deleted.size());
+        assertEquals(bank.getId(), deleted.get(0).getPasswordId());
+        assertTrue(deleted.get(0).getChangeSeq() > updated);
+        assertEquals(deleted.get(0).getChangeSeq(), vaultVersion());
+
+        assertEquals(List.of(updated), passwords.findChangesSince(user.getId(), 0, Limit.unlimited()).stream()
+                .map(PasswordChange::changeSeq)
+                .toList());
+    }
+
+    @Test
+    void purgeDeletesLeaveNoTombstones() {
+        passwords.save(entry("mail"));
+        passwords.save(entry("bank"));
+        long version = vaultVersion();
+
+        LogStore.Transaction transaction = store.begin(false);
+        passwords.skipTombstonesForTransaction();
+        assertEquals(2, passwords.deleteAllByUserId(user.getId()));
+        store.commit(transaction);
+
+        assertEquals(List.of(), tombstones.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(
+                user.getId(), 0, Limit.unlimited()));
+        assertEquals(version, vaultVersion());
+        assertEquals(0, passwords.countByUserIdUpTo(user.getId(), 10));
+
+        // The flag ends with the transaction
+        passwords.delete(passwords.save(entry("later")));
+        assertEquals(1, tombstones.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(
+                user.getId(), 0, Limit.unlimited()).size());
+    }
+
+    @Test
+    void repeatedNamesAndEmailsAreRejected() {
+        passwords.save(entry("mail"));
+
+        assertThrows(DuplicateKeyException.class, () -> passwords.save(entry("mail")));
+        assertEquals(1, passwords.findByUserId(user.getId()).size());
+
+        assertThrows(DuplicateKeyException.class, () -> users.save(user(user.getEmail())));
+        assertEquals(1, users.count());
+    }
+
+    @Test
+    void rollbackUndoesTheSecondaryIndexes() {
+        Password mail = passwords.save(entry("mail"));
+        Password bank = passwords.save(entry("bank"));
+        long version = vaultVersion();
+
+        LogStore.Transaction transaction = store.begin(false);
+        User other = users.save(user("other@passly.dev"));
+        passwords.save(entry("new"));
+        mail.setName("inbox");
+        passwords.save(mail);
+        passwords.delete(bank);
+        store.rollback(transaction);
+
+        assertTrue(users.findByEmail(other.getEmail()).isEmpty());
+        assertTrue(passwords.findByNameAndUser_Id("mail", user.getId()).isPresent());
+        assertTrue(passwords.findByNameAndUser_Id("bank", user.getId()).isPresent());
+        assertTrue(passwords.findByNameAndUser_Id("inbox", user.getId()).isEmpty());
+        assertTrue(passwords.findByNameAndUser_Id("new", user.getId()).isEmpty());
+        assertEquals(List.of("bank", "mail"), passwords.findSummariesByUserId(user.getId(), Limit.unlimited()).stream()
+                .map(PasswordSummary::name)
+                .toList());
+        assertEquals(List.of("mail"), passwords.findNameMatches(user.getId(), "mai", "%mai%", Limit.unlimited()).stream()
+                .map(PasswordMatch::name)
+                .toList());
+        assertEquals(2, passwords.findChangesSince(user.getId(), 0, Limit.unlimited()).size());
+        assertEquals(List.of(), tombstones.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeq(
+                user.getId(), 0, Limit.unlimited()));
+        assertEquals(version, vaultVersion());
+    }
+
+    private long vaultVersion() {
+        return users.findVaultVersion(user.getId()).orElseThrow();
+    }
+
+    private Password entry(String name) {
+        return Password.builder().userId(user.getId()).name(name).encryptedValue("secret").build();
+    }
+
+    private static User user(String email) {
+        return User.builder()
+                .firstName("Embedded")
+                .lastName("Test")
+                .email(email)
+                .password("not-a-hash")
+                .build();
+    }
+}
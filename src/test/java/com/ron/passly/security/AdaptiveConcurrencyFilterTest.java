@@ -0,0 +1,76 @@
+package com.ron.passly.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveConcurrencyFilterTest {
+
+    private static final int LIMIT = 4;
+    private static final int CLIENTS = 32;
+
+    @Test
+    void concurrentRequestsNeverExceedTheLimit() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AdaptiveConcurrencyFilter filter = new AdaptiveConcurrencyFilter(true, LIMIT, LIMIT, LIMIT, 20,
+                0.0, 0.0, 0.0, registry);
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                statuses.add(clients.submit(() -> {
+                    MockHttpServletResponse response = new MockHttpServletResponse();
+                    start.await();
+                    filter.doFilter(new MockHttpServletRequest("POST", "/api/auth/register"), response, (req, res) -> {
+                        admitted.incrementAndGet();
+                        try {
+                            finish.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                    return response.getStatus();
+                }));
+            }
+            start.countDown();
+
+            // Everyone not admitted is shed at once; the admitted ones hold their slots until released
+            waitFor(() -> registry.get("concurrency.shed").tag("class", "default").counter().count() == CLIENTS - LIMIT);
+            assertEquals(LIMIT, admitted.get());
+            assertEquals(LIMIT, registry.get("concurrency.inflight").gauge().value());
+
+            finish.countDown();
+            for (Future<Integer> status : statuses) {
+                status.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(0, registry.get("concurrency.inflight").gauge().value());
+        } finally {
+            finish.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
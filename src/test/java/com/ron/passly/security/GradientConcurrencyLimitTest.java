@@ -0,0 +1,59 @@
+package com.ron.passly.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GradientConcurrencyLimitTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void growsWhileLatencyStaysFlatUnderLoad() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 4, 400, 10);
+
+        for (int i = 0; i < 500; i++) {
+            limit.onSample(10 * MS, limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() > 20, "limit: " + limit.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(100, 4, 400, 10);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MS, limit.getLimit(), false);
+        }
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(80 * MS, limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() < before, "before: " + before + ", after: " + limit.getLimit());
+    }
+
+    @Test
+    void ignoresLatencyWhenApplicationLimited() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(100, 4, 400, 10);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(500 * MS, 1, false);
+        }
+
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    void backsOffOnDropsButRespectsMinimum() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(50, 4, 400, 1);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(10 * MS, 50, true);
+        }
+
+        assertEquals(4, limit.getLimit());
+    }
+}
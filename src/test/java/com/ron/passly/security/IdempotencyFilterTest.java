@@ -0,0 +1,143 @@
+package com.ron.passly.security;
+
+import com.ron.passly.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs against the local fallback store: the Redis template fails every call, as when Redis is down.
+ */
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"email\":\"a@passly.dev\"}";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisDown = mock(RedisTemplate.class, invocation -> {
+        throw new RedisConnectionFailureException("down");
+    });
+    private final IdempotencyFilter filter = new IdempotencyFilter(
+            new IdempotencyService(redisDown, Duration.ofHours(1), Duration.ofSeconds(30)),
+            List.of("/api/auth/register"), 65536, Duration.ofSeconds(10), "test-secret");
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void duplicateWaitsForTheRequestInFlightAndGetsItsResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            executions.incrementAndGet();
+            started.countDown();
+            try {
+                finish.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(res, 201, "created");
+        };
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = clients.submit(() -> send("key", BODY, slow));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> duplicate = clients.submit(() -> send("key", BODY, slow));
+
+            Thread.sleep(200);
+            assertFalse(duplicate.isDone());
+            finish.countDown();
+
+            assertEquals(201, first.get(10, TimeUnit.SECONDS).getStatus());
+            MockHttpServletResponse replayed = duplicate.get(10, TimeUnit.SECONDS);
+            assertEquals(201, replayed.getStatus());
+            assertEquals("created", replayed.getContentAsString());
+            assertEquals("true", replayed.getHeader("Idempotent-Replayed"));
+            assertEquals(1, executions.get());
+        } finally {
+            finish.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void reusedKeyWithADifferentBodyIsRejected() throws Exception {
+        send("key", BODY, respondingWith(201));
+
+        assertEquals(422, send("key", "{\"email\":\"b@passly.dev\"}", respondingWith(201)).getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void deterministicClientErrorsAreReplayed() throws Exception {
+        send("key", BODY, respondingWith(409));
+
+        MockHttpServletResponse replayed = send("key", BODY, respondingWith(201));
+        assertEquals(409, replayed.getStatus());
+        assertEquals("true", replayed.getHeader("Idempotent-Replayed"));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void serverErrorReleasesTheKey() throws Exception {
+        send("key", BODY, respondingWith(500));
+
+        MockHttpServletResponse retry = send("key", BODY, respondingWith(201));
+        assertEquals(201, retry.getStatus());
+        assertNull(retry.getHeader("Idempotent-Replayed"));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void rateLimitedResponseIsNotStored() throws Exception {
+        send("key", BODY, respondingWith(429));
+
+        MockHttpServletResponse retry = send("key", BODY, respondingWith(201));
+        assertEquals(201, retry.getStatus());
+        assertNull(retry.getHeader("Idempotent-Replayed"));
+        assertEquals(2, executions.get());
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/register");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private FilterChain respondingWith(int status) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            respond(res, status, "status " + status);
+        };
+    }
+
+    private static void respond(ServletResponse res, int status, String body) throws IOException {
+        HttpServletResponse response = (HttpServletResponse) res;
+        response.setStatus(status);
+        response.setContentType("text/plain");
+        response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
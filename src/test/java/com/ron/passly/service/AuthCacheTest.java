@@ -0,0 +1,57 @@
+package com.ron.passly.service;
+
+import com.ron.passly.dto.AuthUser;
+import com.ron.passly.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Emails are unique case-sensitively, so the auth cache must not fold two accounts into one entry.
+ * Needs a live PostgreSQL, so it only runs when SPRING_DATASOURCE_URL is set.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties = "warmup.enabled=false")
+class AuthCacheTest {
+
+    @Autowired
+    private UserService userService;
+
+    private final List<String> emails = new ArrayList<>();
+
+    @AfterEach
+    void deleteUsers() {
+        emails.forEach(userService::deleteUserByEmail);
+    }
+
+    @Test
+    void emailsDifferingOnlyInCaseHaveTheirOwnEntries() {
+        String local = "case-" + UUID.randomUUID();
+        User upper = createUser("Case-" + local.substring(5) + "@passly.dev");
+        User lower = createUser(local + "@passly.dev");
+
+        // Twice each, so the second lookups are served from the cache
+        for (int i = 0; i < 2; i++) {
+            assertEquals(upper.getId(), userService.findAuthDataByEmail(upper.getEmail()).map(AuthUser::id).orElseThrow());
+            assertEquals(lower.getId(), userService.findAuthDataByEmail(lower.getEmail()).map(AuthUser::id).orElseThrow());
+        }
+    }
+
+    private User createUser(String email) {
+        emails.add(email);
+        return userService.createUser(User.builder()
+                .firstName("Auth")
+                .lastName("Cache")
+                .email(email)
+                .password("not-a-hash")
+                .build());
+    }
+}
@@ -0,0 +1,46 @@
+package com.ron.passly.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void neverReportsAnInsertedEmailAsMissing() {
+        EmailBloomFilter filter = new EmailBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@passly.dev");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@passly.dev"));
+        }
+    }
+
+    @Test
+    void matchesEmailsCaseInsensitively() {
+        EmailBloomFilter filter = new EmailBloomFilter(100, 0.01);
+        filter.put("Alice@Passly.dev");
+
+        assertTrue(filter.mightContain("alice@passly.dev"));
+        assertTrue(filter.mightContain(" ALICE@PASSLY.DEV "));
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearConfiguredValue() {
+        EmailBloomFilter filter = new EmailBloomFilter(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("member" + i + "@passly.dev");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("visitor" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}
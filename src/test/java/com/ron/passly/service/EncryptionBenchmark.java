@@ -0,0 +1,95 @@
+package com.ron.passly.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Bulk decryption of one vault under a single data key, single-threaded, into a reused buffer
+ * and across a thread pool, plus encryption as an import does it. Only runs when asked:
+ *
+ *   mvn test -Dtest=EncryptionBenchmark -Dbenchmark.crypto=true [-Dbenchmark.entries=100000] [-Dbenchmark.threads=8]
+ */
+@EnabledIfSystemProperty(named = "benchmark.crypto", matches = "true")
+class EncryptionBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final UUID USER = UUID.randomUUID();
+
+    private final EncryptionService encryptionService = new EncryptionService(null, 10_000, Duration.ofMinutes(5));
+
+    @Test
+    void bulkVaultDecryption() throws Exception {
+        int entries = Integer.getInteger("benchmark.entries", 100_000);
+        int threads = Integer.getInteger("benchmark.threads", 8);
+        String key = encryptionService.generateRandomKey();
+        List<String> vault = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            vault.add(encryptionService.encrypt(USER, value(i), key));
+        }
+        assertEquals(value(7), encryptionService.decrypt(USER, vault.get(7), key));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // The first rounds warm the JIT; the last one is the result
+            for (int round = 1; round <= ROUNDS; round++) {
+                long decrypt = perSecond(entries, () -> vault.forEach(entry -> encryptionService.decrypt(USER, entry, key)));
+                long buffers = perSecond(entries, () -> decryptIntoBuffer(vault, key));
+                long parallel = perSecond(entries, () -> decryptOnPool(pool, threads, vault, key));
+                long encrypt = perSecond(entries, () -> {
+                    for (int i = 0; i < entries; i++) {
+                        encryptionService.encrypt(USER, value(i), key);
+                    }
+                });
+                System.out.printf("round %d: decrypt %,9d/s  into buffer %,9d/s  %d threads %,9d/s  encrypt %,9d/s%n",
+                        round, decrypt, buffers, threads, parallel, encrypt);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void decryptIntoBuffer(List<String> vault, String key) {
+        ByteBuffer out = ByteBuffer.allocate(256);
+        for (String entry : vault) {
+            out.clear();
+            encryptionService.decrypt(USER, ByteBuffer.wrap(Base64.getDecoder().decode(entry)), out, key);
+        }
+    }
+
+    private void decryptOnPool(ExecutorService pool, int threads, List<String> vault, String key) {
+        List<Future<?>> parts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> part = vault.subList(t * vault.size() / threads, (t + 1) * vault.size() / threads);
+            parts.add(pool.submit(() -> part.forEach(entry -> encryptionService.decrypt(USER, entry, key))));
+        }
+        try {
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long perSecond(int operations, Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        return operations * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+    }
+
+    private static String value(int i) {
+        return "correct-horse-battery-" + i;
+    }
+}
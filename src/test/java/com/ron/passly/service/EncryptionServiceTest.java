@@ -0,0 +1,75 @@
+package com.ron.passly.service;
+
+import com.ron.passly.repository.UserEncryptionKeyRepository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class EncryptionServiceTest {
+
+    private static final UUID USER = UUID.randomUUID();
+
+    private final EncryptionService encryptionService =
+            new EncryptionService(mock(UserEncryptionKeyRepository.class), 100, Duration.ofMinutes(5));
+    private final String key = encryptionService.generateRandomKey();
+
+    @Test
+    void buffersRoundTripWithTheStringForms() {
+        for (int length : new int[]{0, 1, 15, 16, 17, 100}) {
+            byte[] plain = "x".repeat(length).getBytes(StandardCharsets.UTF_8);
+
+            ByteBuffer encrypted = ByteBuffer.allocate(EncryptionService.encryptedSize(length));
+            int written = encryptionService.encrypt(USER, ByteBuffer.wrap(plain), encrypted, key);
+            assertEquals(EncryptionService.encryptedSize(length), written);
+            assertEquals(new String(plain, StandardCharsets.UTF_8),
+                    encryptionService.decrypt(USER, Base64.getEncoder().encodeToString(encrypted.array()), key));
+
+            byte[] fromString = Base64.getDecoder().decode(
+                    encryptionService.encrypt(USER, new String(plain, StandardCharsets.UTF_8), key));
+            assertEquals(EncryptionService.encryptedSize(length), fromString.length);
+            ByteBuffer out = ByteBuffer.allocate(fromString.length - 16);
+            assertEquals(length, encryptionService.decrypt(USER, ByteBuffer.wrap(fromString), out, key));
+            assertEquals(ByteBuffer.wrap(plain), out.flip());
+        }
+    }
+
+    @Test
+    void encryptedSizeAddsTheIvAndAWholePaddingBlock() {
+        assertEquals(32, EncryptionService.encryptedSize(0));
+        assertEquals(32, EncryptionService.encryptedSize(15));
+        assertEquals(48, EncryptionService.encryptedSize(16));
+        assertEquals(48, EncryptionService.encryptedSize(17));
+    }
+
+    @Test
+    void rejectsAnOutputBufferThatIsTooSmall() {
+        ByteBuffer plain = ByteBuffer.wrap(new byte[16]);
+        assertThrows(RuntimeException.class, () ->
+                encryptionService.encrypt(USER, plain, ByteBuffer.allocate(EncryptionService.encryptedSize(16) - 1), key));
+    }
+
+    @Test
+    void aNewKeyForTheSameUserReplacesTheCachedOne() {
+        String encrypted = encryptionService.encrypt(USER, "secret", key);
+        String rotated = encryptionService.generateRandomKey();
+
+        // A wrong key almost always breaks the padding, and never yields the plain text
+        String decrypted;
+        try {
+            decrypted = encryptionService.decrypt(USER, encrypted, rotated);
+        } catch (RuntimeException e) {
+            decrypted = null;
+        }
+        assertNotEquals("secret", decrypted);
+        assertEquals("secret", encryptionService.decrypt(USER, encryptionService.encrypt(USER, "secret", rotated), rotated));
+    }
+}
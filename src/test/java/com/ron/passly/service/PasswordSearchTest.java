@@ -0,0 +1,87 @@
+package com.ron.passly.service;
+
+import com.ron.passly.dto.PasswordPage;
+import com.ron.passly.dto.PasswordSummary;
+import com.ron.passly.model.Password;
+import com.ron.passly.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Name search against PostgreSQL, where ranking and paging are done by the queries and the term
+ * becomes a LIKE pattern. Needs a live PostgreSQL, so it only runs when SPRING_DATASOURCE_URL is set.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties = "warmup.enabled=false")
+class PasswordSearchTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PasswordService passwordService;
+
+    private final String email = "search-" + UUID.randomUUID() + "@passly.dev";
+    private User user;
+
+    @BeforeEach
+    void createVault() {
+        user = userService.createUser(User.builder()
+                .firstName("Search")
+                .lastName("Test")
+                .email(email)
+                .password("not-a-hash")
+                .build());
+        for (String name : List.of("gmail", "Mail", "Hotmail", "mailbox", "E-Mail Work",
+                "100%", "100 percent", "a_b", "axb", "c\\d", "cd")) {
+            passwordService.createPassword(user, Password.builder().name(name).encryptedValue("secret").build());
+        }
+    }
+
+    @AfterEach
+    void deleteUser() {
+        userService.deleteUserByEmail(email);
+    }
+
+    @Test
+    void ranksWholeNamesThenPrefixesThenSubstrings() {
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 50));
+    }
+
+    @Test
+    void cursorCarriesThePageAcrossRanks() {
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 2));
+        assertEquals(List.of("Mail", "mailbox", "E-Mail Work", "Hotmail", "gmail"), search("mail", 1));
+    }
+
+    @Test
+    void likeWildcardsInTheTermAreLiteral() {
+        assertEquals(List.of("100%"), search("%", 50));
+        assertEquals(List.of("100%"), search("0%", 50));
+        assertEquals(List.of("a_b"), search("_", 50));
+        assertEquals(List.of("a_b"), search("a_b", 50));
+        assertEquals(List.of("c\\d"), search("\\", 50));
+        assertEquals(List.of("c\\d"), search("c\\d", 50));
+    }
+
+    // Every page in turn, so a wrong cursor shows up as a missing or repeated name
+    private List<String> search(String term, int pageSize) {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        do {
+            PasswordPage page = passwordService.searchPasswords(user.getId(), term, cursor, pageSize);
+            page.items().stream().map(PasswordSummary::name).forEach(names::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return names;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ron.passly.service;
+
+import com.ron.passly.datasource.ShardRouter;
+import com.ron.passly.dto.AdminUserView;
+import com.ron.passly.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The admin listing merges the pages of every shard. Two fresh databases act as the shards.
+ * Needs a live PostgreSQL, so it only runs when SPRING_DATASOURCE_URL is set.
+ */
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+@SpringBootTest(properties = "warmup.enabled=false")
+class ShardedUserListingTest {
+
+    private static final List<String> SHARDS = List.of("passly_shard0_test", "passly_shard1_test");
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final String prefix = "shards-" + UUID.randomUUID() + "-";
+    private final List<String> emails = new ArrayList<>();
+
+    @BeforeAll
+    static void createShardDatabases() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(System.getenv("SPRING_DATASOURCE_URL"),
+                System.getenv("SPRING_DATASOURCE_USERNAME"), System.getenv("SPRING_DATASOURCE_PASSWORD"));
+             Statement statement = connection.createStatement()) {
+            for (String shard : SHARDS) {
+                try (ResultSet exists = statement.executeQuery("SELECT 1 FROM pg_database WHERE datname = '" + shard + "'")) {
+                    if (exists.next()) {
+                        continue;
+                    }
+                }
+                statement.execute("CREATE DATABASE " + shard);
+            }
+        }
+    }
+
+    @DynamicPropertySource
+    static void shardUrls(DynamicPropertyRegistry registry) {
+        String url = System.getenv("SPRING_DATASOURCE_URL");
+        registry.add("datasource.shards.urls", () -> String.join(",", SHARDS.stream()
+                .map(shard -> url.replaceFirst("/[^/?]+(\\?|$)", "/" + shard + "$1"))
+                .toList()));
+    }
+
+    @AfterEach
+    void deleteUsers() {
+        emails.forEach(userService::deleteUserByEmail);
+    }
+
+    @Test
+    void listsUsersOfEveryShard() {
+        createUsersOnBothShards();
+
+        assertEquals(emails, listedEmails());
+        // Inside a transaction that already read shard 0, every shard is still read
+        assertEquals(emails, new TransactionTemplate(transactionManager).execute(status -> {
+            userService.findByEmail(emails.get(0));
+            return listedEmails();
+        }));
+    }
+
+    private void createUsersOnBothShards() {
+        boolean[] used = new boolean[SHARDS.size()];
+        for (int i = 0; i < 64 && !(used[0] && used[1]); i++) {
+            String email = prefix + String.format("%02d", i) + "@passly.dev";
+            User user = userService.createUser(User.builder()
+                    .firstName("Shard")
+                    .lastName("Listing")
+                    .email(email)
+                    .password("not-a-hash")
+                    .build());
+            emails.add(email);
+            used[shardRouter.shardOf(user.getId())] = true;
+        }
+        assertEquals(List.of(true, true), List.of(used[0], used[1]), "users never landed on both shards");
+    }
+
+    private List<String> listedEmails() {
+        return userService.listUsers(null, prefix, UserService.MAX_PAGE_SIZE).items().stream()
+                .map(AdminUserView::email)
+                .toList();
+    }
+}
@@ -0,0 +1,175 @@
+package com.ron.passly.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStoreTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversCommittedWritesAndDropsUncommittedOnes() {
+        UUID kept = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        UUID uncommitted = UUID.randomUUID();
+        try (LogStore store = open()) {
+            store.put(0, kept, bytes("one"));
+            store.put(0, deleted, bytes("two"));
+            store.put(0, kept, bytes("three"));
+            store.delete(0, deleted);
+
+            // Written but never committed, as if the process died mid-transaction
+            store.begin(false);
+            store.put(0, uncommitted, bytes("lost"));
+            store.suspend();
+        }
+
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("three"), store.get(0, kept));
+            assertNull(store.get(0, deleted));
+            assertNull(store.get(0, uncommitted));
+            assertEquals(1, store.size(0));
+        }
+    }
+
+    @Test
+    void rollbackRestoresPreviousValues() {
+        UUID key = UUID.randomUUID();
+        try (LogStore store = open()) {
+            store.put(0, key, bytes("before"));
+            assertThrows(IllegalStateException.class, () -> store.inTransaction(() -> {
+                store.put(0, key, bytes("after"));
+                store.put(0, UUID.randomUUID(), bytes("other"));
+                throw new IllegalStateException("rolled back");
+            }));
+            assertArrayEquals(bytes("before"), store.get(0, key));
+            assertEquals(1, store.size(0));
+        }
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("before"), store.get(0, key));
+        }
+    }
+
+    @Test
+    void stopsAtATornTail() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        try (LogStore store = open()) {
+            store.put(0, first, bytes("intact"));
+            store.put(0, second, bytes("torn"));
+        }
+
+        // Flip the last byte of the second record's value, so its checksum no longer matches
+        Path segment = segments().get(0);
+        int end = LogStore.HEADER + LogStore.FIXED + 6 + LogStore.HEADER + LogStore.FIXED;
+        int secondEnd = end + LogStore.HEADER + LogStore.FIXED + 4;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), secondEnd - 1);
+        }
+
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("intact"), store.get(0, first));
+            assertNull(store.get(0, second));
+            // The log continues after the intact prefix
+            store.put(0, second, bytes("again"));
+        }
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("again"), store.get(0, second));
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveRecordsAndDeletesTheOldestSegment() throws IOException {
+        UUID stable = UUID.randomUUID();
+        UUID churned = UUID.randomUUID();
+        byte[] value = new byte[1000];
+        try (LogStore store = open()) {
+            store.put(0, stable, bytes("stable"));
+            for (int i = 0; i < 200; i++) {
+                store.put(0, churned, value);
+            }
+            assertTrue(segments().size() > 2);
+            Path oldest = segments().get(0);
+
+            assertEquals(1, store.compact());
+            assertTrue(Files.notExists(oldest));
+            assertArrayEquals(bytes("stable"), store.get(0, stable));
+        }
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("stable"), store.get(0, stable));
+            assertArrayEquals(value, store.get(0, churned));
+            assertEquals(2, store.size(0));
+        }
+    }
+
+    @Test
+    void failedFsyncFailsTheWaitingCommitAndLaterWrites() {
+        try (LogStore store = new LogStore(directory, SEGMENT_SIZE, Duration.ZERO, 0.5, Duration.ofHours(1)) {
+            @Override
+            void flush(Segment segment, int from, int to) {
+                throw new UncheckedIOException(new IOException("Input/output error"));
+            }
+        }) {
+            IllegalStateException waiting = assertThrows(IllegalStateException.class,
+                    () -> store.put(0, UUID.randomUUID(), bytes("not durable")));
+            assertTrue(waiting.getMessage().contains("fsync failed"), waiting.getMessage());
+
+            IllegalStateException later = assertThrows(IllegalStateException.class,
+                    () -> store.put(0, UUID.randomUUID(), bytes("refused")));
+            assertTrue(later.getMessage().contains("refuses writes"), later.getMessage());
+        }
+    }
+
+    @Test
+    void aSecondStoreCannotOpenALockedDirectory() {
+        UUID key = UUID.randomUUID();
+        try (LogStore store = open()) {
+            store.put(0, key, bytes("owned"));
+
+            IllegalStateException locked = assertThrows(IllegalStateException.class, this::open);
+            assertTrue(locked.getMessage().contains("already in use"), locked.getMessage());
+            assertArrayEquals(bytes("owned"), store.get(0, key));
+        }
+
+        // Closing releases the lock
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("owned"), store.get(0, key));
+        }
+    }
+
+    private LogStore open() {
+        return new LogStore(directory, SEGMENT_SIZE, Duration.ZERO, 0.5, Duration.ofHours(1));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
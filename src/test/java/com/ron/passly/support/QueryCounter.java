@@ -0,0 +1,31 @@
+package com.ron.passly.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the SQL Hibernate prepares on the current thread, so a test can assert exactly which
+ * queries a use case runs. Enable with
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector=com.ron.passly.support.QueryCounter.
+ * Trigger and JdbcTemplate statements are not seen.
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get().add(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.get().clear();
+    }
+
+    public static List<String> statements() {
+        return List.copyOf(STATEMENTS.get());
+    }
+}